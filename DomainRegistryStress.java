@@ -0,0 +1,145 @@
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Stress test for concurrent writers on DomainRegistry and Group. Every member is added
+// twice from different slices of the work, so exactly one add per member must win. Checks
+// exact counts and reports throughput for each thread count, for example:
+//   javac SplitwiseClone.java DomainRegistryStress.java
+//   java -cp . DomainRegistryStress adds=400000 groups=1 threads=1,2,4,8,16
+// Exits with status 1 if any count is wrong.
+class DomainRegistryStress {
+    private final int adds;
+    private final int groupCount;
+
+    DomainRegistryStress(int adds, int groupCount) {
+        this.adds = adds;
+        this.groupCount = groupCount;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq > 0) {
+                options.put(arg.substring(0, eq), arg.substring(eq + 1));
+            }
+        }
+        int adds = Integer.parseInt(options.getOrDefault("adds", "400000"));
+        int groups = Integer.parseInt(options.getOrDefault("groups", "1"));
+        if (adds < 2 || groups < 1) {
+            System.err.println("adds must be at least 2 and groups at least 1");
+            System.exit(2);
+        }
+
+        DomainRegistryStress stress = new DomainRegistryStress(adds, groups);
+        // Unreported round so JIT compilation does not count against the first thread count
+        boolean ok = stress.run(2, false);
+        System.out.printf("%8s %12s %14s  %s%n", "threads", "time ms", "adds/s", "result");
+        for (String threads : options.getOrDefault("threads", "1,2,4,8,16").split(",")) {
+            ok &= stress.run(Integer.parseInt(threads.trim()), true);
+        }
+        System.exit(ok ? 0 : 1);
+    }
+
+    boolean run(int threads, boolean report) throws Exception {
+        DomainRegistry registry = new DomainRegistry();
+        int distinct = adds / 2;
+        AtomicLong memberWins = new AtomicLong();
+        AtomicLong participantWins = new AtomicLong();
+        CountDownLatch startGate = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads + 1);
+        List<Future<?>> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int from = (int) ((long) adds * t / threads);
+            int to = (int) ((long) adds * (t + 1) / threads);
+            writers.add(pool.submit(() -> {
+                startGate.await();
+                long members = 0;
+                long participants = 0;
+                for (int a = from; a < to; a++) {
+                    int key = a % distinct;
+                    String name = "p" + key;
+                    if (registry.getOrCreateGroup("g" + (key % groupCount)).addMember(name)) {
+                        members++;
+                    }
+                    if (registry.addParticipant(name)) {
+                        participants++;
+                    }
+                }
+                memberWins.addAndGet(members);
+                participantWins.addAndGet(participants);
+                return null;
+            }));
+        }
+
+        // A reader takes snapshots throughout; members never disappear, so each snapshot
+        // must contain at least as many as the one before it
+        Future<?> reader = pool.submit(() -> {
+            startGate.await();
+            int previous = 0;
+            while (writing.get()) {
+                Group group = registry.getGroup("g0");
+                int size = group == null ? 0 : group.getMembers().size();
+                if (size < previous) {
+                    throw new IllegalStateException("Snapshot shrank from " + previous + " to " + size);
+                }
+                previous = size;
+            }
+            return null;
+        });
+
+        long nanos;
+        try {
+            long start = System.nanoTime();
+            startGate.countDown();
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+            nanos = System.nanoTime() - start;
+            writing.set(false);
+            reader.get();
+        } finally {
+            writing.set(false);
+            pool.shutdownNow();
+        }
+
+        List<String> errors = new ArrayList<>();
+        if (memberWins.get() != distinct) {
+            errors.add("member adds won " + memberWins.get() + " times, expected " + distinct);
+        }
+        if (participantWins.get() != distinct) {
+            errors.add("participant adds won " + participantWins.get() + " times, expected " + distinct);
+        }
+        long members = 0;
+        for (int g = 0; g < groupCount; g++) {
+            Group group = registry.getGroup("g" + g);
+            int expected = distinct / groupCount + (g < distinct % groupCount ? 1 : 0);
+            int live = group == null ? 0 : group.getMemberCount();
+            int snapshot = group == null ? 0 : group.getMembers().size();
+            if (live != expected || snapshot != expected) {
+                errors.add("group g" + g + " has " + live + " members (snapshot " + snapshot + "), expected " + expected);
+            }
+            members += live;
+        }
+        if (members != distinct) {
+            errors.add("groups hold " + members + " members, expected " + distinct);
+        }
+
+        if (!report) {
+            if (!errors.isEmpty()) {
+                System.out.println("Warm-up FAILED: " + String.join("; ", errors));
+            }
+            return errors.isEmpty();
+        }
+        System.out.printf("%8d %12.1f %14.0f  %s%n", threads, nanos / 1_000_000.0, adds / (nanos / 1_000_000_000.0),
+                errors.isEmpty() ? "ok" : "FAILED: " + String.join("; ", errors));
+        return errors.isEmpty();
+    }
+}
@@ -0,0 +1,352 @@
+import java.sql.*;
+import java.util.*;
+import java.util.List;
+
+// Checks ReminderDigestEngine against an in-memory fake JDBC connection, so it runs
+// without a database:
+//   javac SplitwiseClone.java ReminderDigestCheck.java
+//   java -cp . ReminderDigestCheck
+// Covers keyset paging across batch boundaries, resuming with after=, the key range stored
+// in reminder_outbox, and that marking a digest paid is one range update in one transaction.
+// Exits with status 1 if any check fails.
+class ReminderDigestCheck {
+    private final List<String> errors = new ArrayList<>();
+
+    public static void main(String[] args) throws Exception {
+        ReminderDigestCheck check = new ReminderDigestCheck();
+        check.checkPaging();
+        check.checkResume();
+        check.checkOutboxMarkPaid();
+        check.checkMarkDigestPaid();
+        if (check.errors.isEmpty()) {
+            System.out.println("All reminder digest checks passed");
+        } else {
+            check.errors.forEach(error -> System.out.println("FAILED: " + error));
+        }
+        System.exit(check.errors.isEmpty() ? 0 : 1);
+    }
+
+    // participant 3 has nothing unpaid; participant 2 has one share already paid
+    private static FakeDatabase sampleDatabase() {
+        FakeDatabase db = new FakeDatabase();
+        db.addShare(1, 1, 10, false);
+        db.addShare(1, 2, 20, false);
+        db.addShare(1, 3, 30, false);
+        db.addShare(2, 2, 5, true);
+        db.addShare(2, 4, 15, false);
+        for (int expenseId = 1; expenseId <= 7; expenseId++) {
+            db.addShare(4, expenseId, 1, false);
+        }
+        db.addShare(5, 9, 40, false);
+        return db;
+    }
+
+    private static final String EXPECTED = "1:3:3:60.00 2:1:4:15.00 4:7:7:7.00 5:1:9:40.00";
+
+    void checkPaging() throws Exception {
+        FakeDatabase db = sampleDatabase();
+        ListSink sink = new ListSink();
+        int last = new ReminderDigestEngine(2).run(db.connection(), sink, 0, Long.MAX_VALUE);
+        expect("paging returns 0 at end of scan", 0, last);
+        expect("paging digests", EXPECTED, sink.summary());
+        // 12 unpaid shares in batches of 2: six full batches and one empty one
+        expect("paging queries", 7, db.keysetQueries);
+    }
+
+    void checkResume() throws Exception {
+        FakeDatabase db = sampleDatabase();
+        ListSink sink = new ListSink();
+        ReminderDigestEngine engine = new ReminderDigestEngine(3);
+        int last = engine.run(db.connection(), sink, 0, 4);
+        expect("first run stops after participant 2", 2, last);
+        last = engine.run(db.connection(), sink, last, Long.MAX_VALUE);
+        expect("resumed run reaches the end", 0, last);
+        expect("resumed digests", EXPECTED, sink.summary());
+    }
+
+    void checkOutboxMarkPaid() throws Exception {
+        FakeDatabase db = sampleDatabase();
+        Connection conn = db.connection();
+        try (OutboxDigestSink sink = new OutboxDigestSink(conn)) {
+            new ReminderDigestEngine(100).run(conn, sink, 0, Long.MAX_VALUE);
+        }
+        expect("outbox rows", 4, db.outbox.size());
+        expect("outbox row 3 key range", "4:7", db.outbox.get(2).participantId + ":" + db.outbox.get(2).maxExpenseId);
+
+        // A share created after the digest went out stays unpaid
+        db.addShare(4, 8, 1, false);
+        db.resetCounters();
+        int updated = ReminderDigestEngine.markOutboxPaid(conn, 3);
+        expect("outbox mark-paid share count", 7, updated);
+        expect("outbox mark-paid range updates", 1, db.shareUpdates);
+        expect("outbox mark-paid updates outside a transaction", 0, db.updatesInAutoCommit);
+        expect("outbox mark-paid commits", 1, db.commits);
+        expect("outbox mark-paid restores auto-commit", true, db.autoCommit);
+        expect("outbox row stamped paid", true, db.outbox.get(2).paid);
+        expect("participant 4 unpaid after mark-paid", "8", db.unpaidExpenses(4));
+
+        db.resetCounters();
+        expect("second mark-paid of the same row", 0, ReminderDigestEngine.markOutboxPaid(conn, 3));
+        expect("second mark-paid range updates", 0, db.shareUpdates);
+
+        // A late share inside the range of an undelivered row must not be marked paid with it
+        db.addShare(2, 3, 25, false);
+        db.resetCounters();
+        expectFailure("outbox mark-paid with a late share in range", () -> ReminderDigestEngine.markOutboxPaid(conn, 2));
+        expect("outbox mark-paid with a late share rolls back", 1, db.rollbacks);
+        expect("outbox mark-paid with a late share commits", 0, db.commits);
+        expect("participant 2 unpaid after rolled back mark-paid", "4,3", db.unpaidExpenses(2));
+        expect("outbox row 2 not stamped", false, db.outbox.get(1).paid);
+    }
+
+    void checkMarkDigestPaid() throws Exception {
+        FakeDatabase db = sampleDatabase();
+        int updated = ReminderDigestEngine.markDigestPaid(db.connection(), 1, 2, 2);
+        expect("ranged mark-paid share count", 2, updated);
+        expect("ranged mark-paid range updates", 1, db.shareUpdates);
+        expect("ranged mark-paid commits", 1, db.commits);
+        expect("participant 1 unpaid after ranged mark-paid", "3", db.unpaidExpenses(1));
+        expect("participant 4 untouched", "1,2,3,4,5,6,7", db.unpaidExpenses(4));
+
+        db.resetCounters();
+        expectFailure("ranged mark-paid with a wrong share count",
+                () -> ReminderDigestEngine.markDigestPaid(db.connection(), 4, 7, 6));
+        expect("ranged mark-paid with a wrong share count rolls back", 1, db.rollbacks);
+        expect("participant 4 unpaid after rolled back mark-paid", "1,2,3,4,5,6,7", db.unpaidExpenses(4));
+    }
+
+    private void expect(String what, Object expected, Object actual) {
+        if (!expected.equals(actual)) {
+            errors.add(what + ": expected " + expected + ", got " + actual);
+        }
+    }
+
+    private interface SqlAction {
+        void run() throws SQLException;
+    }
+
+    private void expectFailure(String what, SqlAction action) {
+        try {
+            action.run();
+            errors.add(what + ": expected SQLException");
+        } catch (SQLException e) {
+            // expected
+        }
+    }
+
+    private static class ListSink implements DigestSink {
+        private final List<ReminderDigest> digests = new ArrayList<>();
+
+        @Override
+        public void write(ReminderDigest digest) {
+            digests.add(digest);
+        }
+
+        @Override
+        public void close() {
+        }
+
+        String summary() {
+            StringJoiner joiner = new StringJoiner(" ");
+            for (ReminderDigest digest : digests) {
+                joiner.add(String.format("%d:%d:%d:%.2f", digest.getParticipantId(), digest.getShareCount(),
+                        digest.getMaxExpenseId(), digest.getTotalAmount()));
+            }
+            return joiner.toString();
+        }
+    }
+
+    private static class FakeShare {
+        final int participantId;
+        final int expenseId;
+        final double amount;
+        boolean paid;
+
+        FakeShare(int participantId, int expenseId, double amount, boolean paid) {
+            this.participantId = participantId;
+            this.expenseId = expenseId;
+            this.amount = amount;
+            this.paid = paid;
+        }
+    }
+
+    private static class FakeOutboxRow {
+        final int participantId;
+        final int maxExpenseId;
+        final int shareCount;
+        boolean paid;
+
+        FakeOutboxRow(int participantId, int maxExpenseId, int shareCount) {
+            this.participantId = participantId;
+            this.maxExpenseId = maxExpenseId;
+            this.shareCount = shareCount;
+        }
+    }
+
+    // Answers only the statements the digest engine issues; anything else throws
+    private static class FakeDatabase {
+        final List<FakeShare> shares = new ArrayList<>();
+        final List<FakeOutboxRow> outbox = new ArrayList<>();
+        // Shares marked paid by the open transaction, unmarked again on rollback
+        final List<FakeShare> uncommitted = new ArrayList<>();
+        boolean autoCommit = true;
+        int keysetQueries;
+        int shareUpdates;
+        int updatesInAutoCommit;
+        int commits;
+        int rollbacks;
+
+        void addShare(int participantId, int expenseId, double amount, boolean paid) {
+            shares.add(new FakeShare(participantId, expenseId, amount, paid));
+        }
+
+        void resetCounters() {
+            keysetQueries = 0;
+            shareUpdates = 0;
+            updatesInAutoCommit = 0;
+            commits = 0;
+            rollbacks = 0;
+        }
+
+        String unpaidExpenses(int participantId) {
+            StringJoiner joiner = new StringJoiner(",");
+            for (FakeShare share : shares) {
+                if (share.participantId == participantId && !share.paid) {
+                    joiner.add(String.valueOf(share.expenseId));
+                }
+            }
+            return joiner.toString();
+        }
+
+        Connection connection() {
+            return (Connection) java.lang.reflect.Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "prepareStatement": return statement((String) args[0]);
+                            case "getAutoCommit": return autoCommit;
+                            case "setAutoCommit": autoCommit = (Boolean) args[0]; return null;
+                            case "commit": commits++; uncommitted.clear(); return null;
+                            case "rollback":
+                                rollbacks++;
+                                uncommitted.forEach(share -> share.paid = false);
+                                uncommitted.clear();
+                                return null;
+                            case "close": return null;
+                            default: throw new UnsupportedOperationException("Connection." + method.getName());
+                        }
+                    });
+        }
+
+        private PreparedStatement statement(String sql) {
+            Map<Integer, Object> params = new HashMap<>();
+            List<Map<Integer, Object>> batch = new ArrayList<>();
+            return (PreparedStatement) java.lang.reflect.Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[] { PreparedStatement.class }, (proxy, method, args) -> {
+                        String name = method.getName();
+                        if (name.startsWith("set")) {
+                            params.put((Integer) args[0], args[1]);
+                            return null;
+                        }
+                        switch (name) {
+                            case "executeQuery": return resultSet(query(sql, params));
+                            case "executeUpdate": return update(sql, params);
+                            case "addBatch": batch.add(new HashMap<>(params)); return null;
+                            case "executeBatch":
+                                int[] counts = new int[batch.size()];
+                                for (int i = 0; i < counts.length; i++) {
+                                    counts[i] = update(sql, batch.get(i));
+                                }
+                                batch.clear();
+                                return counts;
+                            case "close": return null;
+                            default: throw new UnsupportedOperationException("PreparedStatement." + name);
+                        }
+                    });
+        }
+
+        private List<Map<String, Object>> query(String sql, Map<Integer, Object> params) {
+            List<Map<String, Object>> rows = new ArrayList<>();
+            if (sql.contains("FROM expense_shares es")) {
+                keysetQueries++;
+                int afterParticipant = (Integer) params.get(1);
+                int afterExpense = (Integer) params.get(3);
+                int limit = (Integer) params.get(4);
+                List<FakeShare> matches = new ArrayList<>();
+                for (FakeShare share : shares) {
+                    if (!share.paid && (share.participantId > afterParticipant
+                            || (share.participantId == afterParticipant && share.expenseId > afterExpense))) {
+                        matches.add(share);
+                    }
+                }
+                matches.sort(Comparator.comparingInt((FakeShare share) -> share.participantId)
+                        .thenComparingInt(share -> share.expenseId));
+                for (FakeShare share : matches.subList(0, Math.min(limit, matches.size()))) {
+                    Map<String, Object> row = new HashMap<>();
+                    row.put("participant_id", share.participantId);
+                    row.put("expense_id", share.expenseId);
+                    row.put("share_amount", share.amount);
+                    row.put("participant_name", "participant " + share.participantId);
+                    row.put("expense_name", "expense " + share.expenseId);
+                    rows.add(row);
+                }
+            } else if (sql.startsWith("SELECT participant_id, max_expense_id, share_count FROM reminder_outbox")) {
+                int index = (int) (long) (Long) params.get(1) - 1;
+                if (index >= 0 && index < outbox.size() && !outbox.get(index).paid) {
+                    Map<String, Object> row = new HashMap<>();
+                    row.put("participant_id", outbox.get(index).participantId);
+                    row.put("max_expense_id", outbox.get(index).maxExpenseId);
+                    row.put("share_count", outbox.get(index).shareCount);
+                    rows.add(row);
+                }
+            } else {
+                throw new UnsupportedOperationException(sql);
+            }
+            return rows;
+        }
+
+        private int update(String sql, Map<Integer, Object> params) {
+            if (sql.startsWith("UPDATE expense_shares")) {
+                shareUpdates++;
+                if (autoCommit) {
+                    updatesInAutoCommit++;
+                }
+                int participantId = (Integer) params.get(1);
+                int maxExpenseId = (Integer) params.get(2);
+                int updated = 0;
+                for (FakeShare share : shares) {
+                    if (share.participantId == participantId && !share.paid && share.expenseId <= maxExpenseId) {
+                        share.paid = true;
+                        if (!autoCommit) {
+                            uncommitted.add(share);
+                        }
+                        updated++;
+                    }
+                }
+                return updated;
+            } else if (sql.startsWith("INSERT INTO reminder_outbox")) {
+                outbox.add(new FakeOutboxRow((Integer) params.get(1), (Integer) params.get(2), (Integer) params.get(3)));
+                return 1;
+            } else if (sql.startsWith("UPDATE reminder_outbox")) {
+                outbox.get((int) (long) (Long) params.get(1) - 1).paid = true;
+                return 1;
+            }
+            throw new UnsupportedOperationException(sql);
+        }
+
+        private static ResultSet resultSet(List<Map<String, Object>> rows) {
+            Iterator<Map<String, Object>> iterator = rows.iterator();
+            List<Map<String, Object>> current = new ArrayList<>(Collections.singletonList(null));
+            return (ResultSet) java.lang.reflect.Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                    new Class<?>[] { ResultSet.class }, (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "next":
+                                current.set(0, iterator.hasNext() ? iterator.next() : null);
+                                return current.get(0) != null;
+                            case "getInt": case "getDouble": case "getString": return current.get(0).get((String) args[0]);
+                            case "close": return null;
+                            default: throw new UnsupportedOperationException("ResultSet." + method.getName());
+                        }
+                    });
+        }
+    }
+}
@@ -0,0 +1,287 @@
+import java.sql.*;
+import java.util.*;
+import java.util.List;
+
+// Local check of DatabaseManager's replica routing with two embedded databases. A copier
+// thread stands in for replication: it copies new participants and the replication_heartbeat
+// row from the primary to the replica after delayMs. Checks read-your-writes, eviction of a
+// lagging replica and failover when the replica disappears, for example:
+//   javac SplitwiseClone.java ReplicaRoutingCheck.java
+//   java -cp .:h2-2.2.224.jar ReplicaRoutingCheck delayMs=300 maxLagMs=1000
+// Exits with status 1 if any check fails.
+class ReplicaRoutingCheck {
+    private static final String DEFAULT_PRIMARY = "jdbc:h2:mem:splitwise_primary;MODE=MySQL;DB_CLOSE_DELAY=-1";
+    private static final String DEFAULT_REPLICA = "jdbc:h2:mem:splitwise_replica;MODE=MySQL;DB_CLOSE_DELAY=-1";
+    // Identity row of the replica database; the copier never copies database_identity
+    private static final String REPLICA_MARKER = "replica-routing-check";
+
+    private final String primaryUrl;
+    private final String replicaUrl;
+    private final String user;
+    private final String password;
+    private final int delayMs;
+    private final int maxLagMs;
+    private final int probeMs;
+    private final List<String> errors = new ArrayList<>();
+
+    private volatile boolean copying = true;
+    private volatile boolean stopped;
+
+    ReplicaRoutingCheck(Map<String, String> options) {
+        primaryUrl = options.getOrDefault("primary", DEFAULT_PRIMARY);
+        replicaUrl = options.getOrDefault("replica", DEFAULT_REPLICA);
+        user = options.getOrDefault("user", "sa");
+        password = options.getOrDefault("password", "");
+        delayMs = positiveOption(options, "delayMs", "300", 0);
+        maxLagMs = positiveOption(options, "maxLagMs", "1000", 1);
+        probeMs = positiveOption(options, "probeMs", "100", 1);
+        if (delayMs + probeMs >= maxLagMs) {
+            throw new IllegalArgumentException("delayMs + probeMs must stay below maxLagMs, or the replica is never in rotation");
+        }
+    }
+
+    private static int positiveOption(Map<String, String> options, String name, String defaultValue, int min) {
+        String value = options.getOrDefault(name, defaultValue);
+        int parsed;
+        try {
+            parsed = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be a number, got " + value);
+        }
+        if (parsed < min) {
+            throw new IllegalArgumentException(name + " must be at least " + min + ", got " + parsed);
+        }
+        return parsed;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq <= 0) {
+                System.err.println("Ignoring option without '=': " + arg);
+                continue;
+            }
+            options.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+
+        ReplicaRoutingCheck check;
+        try {
+            check = new ReplicaRoutingCheck(options);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: ReplicaRoutingCheck [primary=URL] [replica=URL] [user=U] [password=P] "
+                    + "[delayMs=N>=0] [maxLagMs=N>=1] [probeMs=N>=1]");
+            System.exit(2);
+            return;
+        }
+        System.exit(check.run() ? 0 : 1);
+    }
+
+    boolean run() throws Exception {
+        // DatabaseManager reads its configuration once, when the class is first used
+        System.setProperty("splitwise.db.url", primaryUrl);
+        System.setProperty("splitwise.db.replicas", replicaUrl);
+        System.setProperty("splitwise.db.user", user);
+        System.setProperty("splitwise.db.password", password);
+        System.setProperty("splitwise.db.maxReplicaLagMs", String.valueOf(maxLagMs));
+        System.setProperty("splitwise.db.replicaProbeMs", String.valueOf(probeMs));
+
+        // A real replica gets its schema through replication; here both are migrated
+        try (Connection replica = DriverManager.getConnection(replicaUrl, user, password)) {
+            SchemaMigrator.migrate(replica);
+            try (PreparedStatement stmt = replica.prepareStatement(
+                    "INSERT INTO database_identity (id, database_id) VALUES (1, ?)")) {
+                stmt.setString(1, REPLICA_MARKER);
+                stmt.executeUpdate();
+            }
+        }
+        DatabaseManager.initializeDatabase();
+
+        Thread copier = new Thread(this::copyLoop, "replica-copier");
+        copier.setDaemon(true);
+        copier.start();
+
+        checkEntersRotation();
+        checkReadYourWrites();
+        checkLagEviction();
+        checkFailover();
+
+        stopped = true;
+        copier.join();
+        if (errors.isEmpty()) {
+            System.out.println("All replica routing checks passed");
+        } else {
+            errors.forEach(error -> System.out.println("FAILED: " + error));
+        }
+        return errors.isEmpty();
+    }
+
+    void checkEntersRotation() throws Exception {
+        expect("replica enters rotation", true, waitForReader(true, maxLagMs * 5L));
+    }
+
+    // Each write is read back straight away, when the replica cannot have it yet, so the read
+    // must go to the primary. Every fourth write is read again once the copier has had time
+    // to deliver it, which the replica must then serve.
+    void checkReadYourWrites() throws Exception {
+        int writes = 20;
+        int missing = 0;
+        int immediateFromReplica = 0;
+        int delayedReads = 0;
+        int delayedFromReplica = 0;
+        for (int i = 0; i < writes; i++) {
+            String name = "ryw-" + i + "-" + System.nanoTime();
+            try (Connection conn = DatabaseManager.getConnection()) {
+                ExpenseStore.insertParticipant(conn, name);
+                DatabaseManager.recordWrite(conn);
+            }
+            try (Connection conn = DatabaseManager.getReadConnection()) {
+                immediateFromReplica += isReplica(conn) ? 1 : 0;
+                missing += hasParticipant(conn, name) ? 0 : 1;
+            }
+            if (i % 4 == 0) {
+                Thread.sleep(delayMs + 2L * probeMs);
+                try (Connection conn = DatabaseManager.getReadConnection()) {
+                    delayedReads++;
+                    delayedFromReplica += isReplica(conn) ? 1 : 0;
+                    missing += hasParticipant(conn, name) ? 0 : 1;
+                }
+            }
+        }
+        expect("own writes missing from reads", 0, missing);
+        if (delayMs > 0) {
+            expect("immediate reads served by the lagging replica", 0, immediateFromReplica);
+        }
+        expect("delayed reads served by the replica", delayedReads, delayedFromReplica);
+    }
+
+    private static boolean hasParticipant(Connection conn, String name) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT COUNT(*) FROM participants WHERE name = ?")) {
+            stmt.setString(1, name);
+            ResultSet rs = stmt.executeQuery();
+            return rs.next() && rs.getInt(1) == 1;
+        }
+    }
+
+    void checkLagEviction() throws Exception {
+        copying = false;
+        expect("lagging replica leaves rotation", true, waitForReader(false, maxLagMs * 5L));
+        copying = true;
+        expect("replica returns once it catches up", true, waitForReader(true, maxLagMs * 5L));
+    }
+
+    // Drops the replica database; the next read must fail over to the primary at once
+    void checkFailover() throws Exception {
+        stopped = true;
+        try (Connection replica = DriverManager.getConnection(replicaUrl, user, password);
+             Statement stmt = replica.createStatement()) {
+            stmt.execute("SHUTDOWN");
+        }
+        try (Connection conn = DatabaseManager.getReadConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM participants")) {
+            expect("read after replica loss goes to the primary", false, isReplica(conn));
+            expect("read after replica loss succeeds", true, rs.next());
+        }
+    }
+
+    // Polls getReadConnection until it does (or does not) return the replica
+    private boolean waitForReader(boolean replica, long timeoutMs) throws Exception {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (System.currentTimeMillis() < deadline) {
+            try (Connection conn = DatabaseManager.getReadConnection()) {
+                if (isReplica(conn) == replica) {
+                    return true;
+                }
+            }
+            Thread.sleep(probeMs);
+        }
+        return false;
+    }
+
+    private static boolean isReplica(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT database_id FROM database_identity WHERE id = 1")) {
+            return rs.next() && REPLICA_MARKER.equals(rs.getString(1));
+        }
+    }
+
+    // Captures the primary's heartbeat and new participants every few milliseconds and
+    // applies each capture delayMs later, in order. The heartbeat is read first, so every
+    // write it vouches for is in the same or an earlier capture.
+    private void copyLoop() {
+        Deque<Capture> pending = new ArrayDeque<>();
+        int copiedId = 0;
+        try (Connection primary = DriverManager.getConnection(primaryUrl, user, password);
+             Connection replica = DriverManager.getConnection(replicaUrl, user, password)) {
+            while (!stopped) {
+                if (copying) {
+                    Capture capture = capture(primary, copiedId);
+                    copiedId = capture.lastId;
+                    pending.addLast(capture);
+                    while (!pending.isEmpty() && pending.peekFirst().takenAt + delayMs <= System.currentTimeMillis()) {
+                        apply(replica, pending.removeFirst());
+                    }
+                }
+                Thread.sleep(5);
+            }
+        } catch (SQLException | InterruptedException e) {
+            if (!stopped) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static class Capture {
+        final long takenAt = System.currentTimeMillis();
+        final List<Object[]> participants = new ArrayList<>();
+        long version;
+        Timestamp beatAt;
+        int lastId;
+    }
+
+    private static Capture capture(Connection primary, int afterId) throws SQLException {
+        Capture capture = new Capture();
+        capture.lastId = afterId;
+        try (Statement stmt = primary.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT version, beat_at FROM replication_heartbeat WHERE id = 1")) {
+            rs.next();
+            capture.version = rs.getLong(1);
+            capture.beatAt = rs.getTimestamp(2);
+        }
+        try (PreparedStatement stmt = primary.prepareStatement("SELECT id, name FROM participants WHERE id > ? ORDER BY id")) {
+            stmt.setInt(1, afterId);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                capture.participants.add(new Object[]{rs.getInt(1), rs.getString(2)});
+                capture.lastId = rs.getInt(1);
+            }
+        }
+        return capture;
+    }
+
+    private static void apply(Connection replica, Capture capture) throws SQLException {
+        try (PreparedStatement stmt = replica.prepareStatement("INSERT INTO participants (id, name) VALUES (?, ?)")) {
+            for (Object[] participant : capture.participants) {
+                stmt.setInt(1, (Integer) participant[0]);
+                stmt.setString(2, (String) participant[1]);
+                stmt.executeUpdate();
+            }
+        }
+        try (PreparedStatement stmt = replica.prepareStatement(
+                "UPDATE replication_heartbeat SET version = ?, beat_at = ? WHERE id = 1")) {
+            stmt.setLong(1, capture.version);
+            stmt.setTimestamp(2, capture.beatAt);
+            stmt.executeUpdate();
+        }
+    }
+
+    private void expect(String what, Object expected, Object actual) {
+        boolean ok = expected.equals(actual);
+        System.out.println((ok ? "ok      " : "FAILED  ") + what);
+        if (!ok) {
+            errors.add(what + ": expected " + expected + ", got " + actual);
+        }
+    }
+}
@@ -3,9 +3,33 @@ import javax.swing.border.*;
 import java.awt.*;
 import java.awt.event.*;
 import java.awt.geom.RoundRectangle2D;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.sql.*;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
 
 
 // Helper class to store expense information
@@ -32,151 +56,1377 @@ class Expense {
 
     // Helper class to manage group information
 class Group {
-    private String name;
-    private Set<String> members;
+    private final String name;
+    // Concurrent set, so adds are O(1) and never copy; readers get an immutable snapshot
+    // that is rebuilt only after membership has changed
+    private final Set<String> members = ConcurrentHashMap.newKeySet();
+    private final AtomicLong version = new AtomicLong();
+    private volatile MemberSnapshot snapshot = new MemberSnapshot(0, Collections.emptySet());
+
+    private static class MemberSnapshot {
+        final long version;
+        final Set<String> members;
+
+        MemberSnapshot(long version, Set<String> members) {
+            this.version = version;
+            this.members = members;
+        }
+    }
+
+    public Group(String name) {
+        this.name = name;
+    }
+
+    public String getName() { return name; }
+
+    // The version is read before copying, so a snapshot is never cached under a version
+    // newer than its contents; a concurrent add just makes the next reader copy again
+    public Set<String> getMembers() {
+        long current = version.get();
+        MemberSnapshot cached = snapshot;
+        if (cached.version == current) {
+            return cached.members;
+        }
+        Set<String> copy = Collections.unmodifiableSet(new HashSet<>(members));
+        snapshot = new MemberSnapshot(current, copy);
+        return copy;
+    }
+
+    public boolean hasMember(String member) {
+        return members.contains(member);
+    }
+
+    public int getMemberCount() {
+        return members.size();
+    }
+
+    // Atomic add-if-absent, mirroring the (group_id, participant_id) primary key
+    public boolean addMember(String member) {
+        if (members.add(member)) {
+            version.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    // Returns how many of the given members were new
+    public int addMembers(Collection<String> newMembers) {
+        int added = 0;
+        for (String member : newMembers) {
+            if (members.add(member)) {
+                added++;
+            }
+        }
+        if (added > 0) {
+            version.addAndGet(added);
+        }
+        return added;
+    }
+}
+
+// Thread-safe registry of participants, groups and expenses, so background loading
+// and other threads can update state without going through the EDT
+class DomainRegistry {
+    private final Set<String> participants = ConcurrentHashMap.newKeySet();
+    private final ConcurrentHashMap<String, Group> groups = new ConcurrentHashMap<>();
+    // Newest first, matching the full load's created_at DESC
+    private final Deque<Expense> expenses = new ConcurrentLinkedDeque<>();
+
+    public boolean addParticipant(String name) {
+        return participants.add(name);
+    }
+
+    public boolean hasParticipant(String name) {
+        return participants.contains(name);
+    }
+
+    // Returns false when a group with this name is already registered
+    public boolean addGroup(String name) {
+        return groups.putIfAbsent(name, new Group(name)) == null;
+    }
+
+    public Group getOrCreateGroup(String name) {
+        return groups.computeIfAbsent(name, Group::new);
+    }
+
+    public Group getGroup(String name) {
+        return groups.get(name);
+    }
+
+    public boolean hasGroup(String name) {
+        return groups.containsKey(name);
+    }
+
+    public Group removeGroup(String name) {
+        return groups.remove(name);
+    }
+
+    // Appends an expense older than every registered one
+    public void addExpense(Expense expense) {
+        expenses.add(expense);
+    }
+
+    public void addExpenses(Collection<Expense> newExpenses) {
+        expenses.addAll(newExpenses);
+    }
+
+    public void addNewestExpense(Expense expense) {
+        expenses.addFirst(expense);
+    }
+
+    // newestFirst is in created_at DESC order and ends up ahead of every registered expense
+    public void addNewestExpenses(List<Expense> newestFirst) {
+        for (int i = newestFirst.size() - 1; i >= 0; i--) {
+            expenses.addFirst(newestFirst.get(i));
+        }
+    }
+
+    public boolean removeExpense(int expenseId) {
+        return expenses.removeIf(e -> e.getId() == expenseId);
+    }
+
+    public boolean hasExpenses() {
+        return !expenses.isEmpty();
+    }
+
+    // Point-in-time copy, newest first
+    public List<Expense> getExpenses() {
+        return new ArrayList<>(expenses);
+    }
+}
+
+// List model that loads and updates rows in bulk, firing one event per contiguous change
+// instead of one per row like DefaultListModel.addElement
+class BulkListModel<E> extends AbstractListModel<E> {
+    // Above this many separate runs of removed rows, replaceWith swaps the whole list
+    private static final int MAX_REMOVAL_EVENTS = 16;
+
+    private final List<E> items = new ArrayList<>();
+
+    @Override
+    public int getSize() { return items.size(); }
+
+    @Override
+    public E getElementAt(int index) { return items.get(index); }
+
+    public int size() { return items.size(); }
+    public E get(int index) { return items.get(index); }
+
+    public void addElement(E item) {
+        items.add(item);
+        fireIntervalAdded(this, items.size() - 1, items.size() - 1);
+    }
+
+    public void addAll(Collection<? extends E> newItems) {
+        if (newItems.isEmpty()) {
+            return;
+        }
+        int first = items.size();
+        items.addAll(newItems);
+        fireIntervalAdded(this, first, items.size() - 1);
+    }
+
+    public boolean removeElement(E item) {
+        int index = items.indexOf(item);
+        if (index < 0) {
+            return false;
+        }
+        items.remove(index);
+        fireIntervalRemoved(this, index, index);
+        return true;
+    }
+
+    public void clear() {
+        if (items.isEmpty()) {
+            return;
+        }
+        int last = items.size() - 1;
+        items.clear();
+        fireIntervalRemoved(this, 0, last);
+    }
+
+    // Makes the model hold exactly the given items. Rows that stay keep their position and
+    // each contiguous run of removed rows fires one event. When the removals are scattered
+    // over more than MAX_REMOVAL_EVENTS runs, or most rows go, the set is swapped in one go.
+    public void replaceWith(Collection<? extends E> newItems) {
+        Set<E> wanted = new HashSet<>(newItems);
+        int kept = 0;
+        int runs = 0;
+        for (int i = 0; i < items.size(); i++) {
+            if (wanted.contains(items.get(i))) {
+                kept++;
+            } else if (i == 0 || wanted.contains(items.get(i - 1))) {
+                runs++;
+            }
+        }
+
+        if (kept < items.size() / 2 || runs > MAX_REMOVAL_EVENTS) {
+            clear();
+            addAll(newItems);
+            return;
+        }
+
+        // Last run first, so the indices of earlier runs stay valid
+        int end = items.size() - 1;
+        while (end >= 0) {
+            if (wanted.contains(items.get(end))) {
+                end--;
+                continue;
+            }
+            int start = end;
+            while (start > 0 && !wanted.contains(items.get(start - 1))) {
+                start--;
+            }
+            items.subList(start, end + 1).clear();
+            fireIntervalRemoved(this, start, end);
+            end = start - 1;
+        }
+        Set<E> present = new HashSet<>(items);
+        List<E> added = new ArrayList<>();
+        for (E item : newItems) {
+            if (!present.contains(item)) {
+                added.add(item);
+            }
+        }
+        addAll(added);
+    }
+}
+
+// Custom button class with rounded corners
+class RoundedButton extends JButton {
+    private static final Color NORMAL_COLOR = new Color(100, 160, 210);
+    private static final Color ROLLOVER_COLOR = new Color(80, 140, 190);
+    private static final Color PRESSED_COLOR = new Color(60, 120, 170);
+
+    // Rebuilt only when the button is resized
+    private RoundRectangle2D.Float shape;
+
+    public RoundedButton(String text) {
+        super(text);
+        setOpaque(false);
+        setFocusPainted(false);
+        setBorderPainted(false);
+        setContentAreaFilled(false);
+        setFont(new Font("Segoe UI", Font.BOLD, 14));
+        setForeground(Color.WHITE);
+
+        addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseEntered(MouseEvent e) {
+                setBackground(ROLLOVER_COLOR);
+            }
+
+            @Override
+            public void mouseExited(MouseEvent e) {
+                setBackground(NORMAL_COLOR);
+            }
+        });
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Graphics2D g2 = (Graphics2D) g;
+        Object oldAntialiasing = g2.getRenderingHint(RenderingHints.KEY_ANTIALIASING);
+        Color oldColor = g2.getColor();
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+        if (getModel().isPressed()) {
+            g2.setColor(PRESSED_COLOR);
+        } else if (getModel().isRollover()) {
+            g2.setColor(ROLLOVER_COLOR);
+        } else {
+            g2.setColor(NORMAL_COLOR);
+        }
+
+        if (shape == null || shape.width != getWidth() || shape.height != getHeight()) {
+            shape = new RoundRectangle2D.Float(0, 0, getWidth(), getHeight(), 15, 15);
+        }
+        g2.fill(shape);
+
+        g2.setColor(oldColor);
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, oldAntialiasing);
+
+        super.paintComponent(g);
+    }
+}
+//jdbc:mysql://localhost:3306/splitwise_clone
+//jdbc:sqlserver://server:port;DatabaseName=dbname
+class DatabaseManager {
+    private static final String DB_URL = System.getProperty("splitwise.db.url", "jdbc:mysql://localhost:3306/splitwise_clone");
+    private static final String USER = System.getProperty("splitwise.db.user", "root");
+    private static final String PASS = System.getProperty("splitwise.db.password", "DB!d43m0n");
+
+    // Read replicas as a comma-separated list of JDBC URLs (-Dsplitwise.db.replicas=...)
+    private static final List<ReplicaEndpoint> REPLICAS = parseReplicas(System.getProperty("splitwise.db.replicas", ""));
+    // A replica further behind than this is taken out of rotation until it catches up
+    private static final long MAX_REPLICA_LAG_MS = Long.getLong("splitwise.db.maxReplicaLagMs", 5000L);
+    private static final long REPLICA_PROBE_MS = Long.getLong("splitwise.db.replicaProbeMs", 1000L);
+    // Keeps an unreachable replica from stalling startup, which runs on the EDT
+    private static final int REPLICA_CONNECT_TIMEOUT_MS = Integer.getInteger("splitwise.db.replicaConnectTimeoutMs", 2000);
+    private static final long REPLICA_RETRY_MS = 30_000;
+
+    // Read-your-writes state for this client session. Without GTIDs, lastWriteVersion is
+    // the replication_heartbeat version this session's last write was followed by. When that
+    // bump fails, reads stay on the primary until unknownPositionUntil.
+    private static String lastWriteGtidSet = "";
+    private static long lastWriteVersion;
+    private static long unknownPositionUntil;
+    private static int nextReplica;
+    private static volatile String databaseId;
+
+    static {
+        if (!REPLICAS.isEmpty()) {
+            startReplicaProbes();
+        }
+    }
+
+    // Health and lag come from the background probe; a replica is out of rotation until
+    // the first probe succeeds. A failed connect also takes it out until its retry time.
+    private static class ReplicaEndpoint {
+        final String url;
+        volatile boolean healthy;
+        volatile long downUntil;
+        private boolean probed;
+
+        ReplicaEndpoint(String url) {
+            this.url = url;
+        }
+
+        boolean isAvailable() {
+            return healthy && System.currentTimeMillis() >= downUntil;
+        }
+
+        void markDown() {
+            downUntil = System.currentTimeMillis() + REPLICA_RETRY_MS;
+        }
+
+        void update(boolean nowHealthy, String reason) {
+            if (!probed || nowHealthy != healthy) {
+                System.err.println("Replica " + url + (nowHealthy ? " in rotation" : " out of rotation: " + reason));
+            }
+            healthy = nowHealthy;
+            probed = true;
+        }
+    }
+
+    // Connection to the primary; use for writes and for reads inside a write
+    public static Connection getConnection() throws SQLException {
+        loadDriver();
+        return DriverManager.getConnection(DB_URL, USER, PASS);
+    }
+
+    // Connection for read-only work. Goes to the next healthy replica that has caught up
+    // with this session's writes, and falls back to the primary otherwise.
+    public static Connection getReadConnection() throws SQLException {
+        if (REPLICAS.isEmpty()) {
+            return getConnection();
+        }
+        loadDriver();
+
+        for (int i = 0; i < REPLICAS.size(); i++) {
+            ReplicaEndpoint replica = nextReplica();
+            if (!replica.isAvailable()) {
+                continue;
+            }
+
+            Connection conn = null;
+            try {
+                conn = openReplica(replica.url, false);
+                if (hasCaughtUp(conn)) {
+                    conn.setReadOnly(true);
+                    return conn;
+                }
+                conn.close();
+            } catch (SQLException e) {
+                System.err.println("Replica " + replica.url + " unavailable: " + e.getMessage());
+                replica.markDown();
+                closeQuietly(conn);
+            }
+        }
+        return getConnection();
+    }
+
+    // Call after a successful write on a primary connection so later reads can see it.
+    // Without GTIDs this bumps the heartbeat version in its own transaction; replicas apply
+    // commits in order, so one that has the new version also has the write.
+    public static void recordWrite(Connection conn) {
+        if (REPLICAS.isEmpty()) {
+            return;
+        }
+
+        String gtidSet = "";
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT @@GLOBAL.gtid_executed")) {
+            if (rs.next() && rs.getString(1) != null) {
+                gtidSet = rs.getString(1);
+            }
+        } catch (SQLException e) {
+            // No GTIDs on this server; fall back to the heartbeat version
+        }
+
+        long version = 0;
+        boolean positionKnown = true;
+        if (gtidSet.isEmpty()) {
+            try {
+                version = writeHeartbeat(conn);
+            } catch (SQLException e) {
+                positionKnown = false;
+            }
+        }
+
+        synchronized (DatabaseManager.class) {
+            lastWriteGtidSet = gtidSet;
+            if (positionKnown) {
+                // A later version also covers a write whose own bump failed
+                lastWriteVersion = Math.max(lastWriteVersion, version);
+                unknownPositionUntil = 0;
+            } else {
+                // Past MAX_REPLICA_LAG_MS a replica still missing the write is out of rotation
+                unknownPositionUntil = System.currentTimeMillis() + MAX_REPLICA_LAG_MS;
+            }
+        }
+    }
+
+    private static boolean hasCaughtUp(Connection replica) throws SQLException {
+        String gtidSet;
+        long version;
+        synchronized (DatabaseManager.class) {
+            if (System.currentTimeMillis() < unknownPositionUntil) {
+                return false;
+            }
+            gtidSet = lastWriteGtidSet;
+            version = lastWriteVersion;
+        }
+
+        if (!gtidSet.isEmpty()) {
+            try (PreparedStatement stmt = replica.prepareStatement("SELECT GTID_SUBSET(?, @@GLOBAL.gtid_executed)")) {
+                stmt.setString(1, gtidSet);
+                ResultSet rs = stmt.executeQuery();
+                return rs.next() && rs.getInt(1) == 1;
+            }
+        }
+        if (version == 0) {
+            return true;
+        }
+        try (Statement stmt = replica.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT version FROM replication_heartbeat WHERE id = 1")) {
+            return rs.next() && rs.getLong(1) >= version;
+        }
+    }
+
+    // Bumps the heartbeat row on the primary and returns the new version
+    private static long writeHeartbeat(Connection conn) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate(
+                    "UPDATE replication_heartbeat SET version = version + 1, beat_at = CURRENT_TIMESTAMP(3) WHERE id = 1");
+            long version;
+            try (ResultSet rs = stmt.executeQuery("SELECT version FROM replication_heartbeat WHERE id = 1")) {
+                if (!rs.next()) {
+                    throw new SQLException("replication_heartbeat has no row");
+                }
+                version = rs.getLong(1);
+            }
+            conn.commit();
+            return version;
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static void startReplicaProbes() {
+        ScheduledExecutorService probes = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-probe");
+            thread.setDaemon(true);
+            return thread;
+        });
+        probes.scheduleWithFixedDelay(DatabaseManager::probeReplicas, 0, REPLICA_PROBE_MS, TimeUnit.MILLISECONDS);
+    }
+
+    // Lag is the age of the newest heartbeat a replica has applied, once it is missing a
+    // newer one. The probe writes a heartbeat each round, so it is measured to within
+    // REPLICA_PROBE_MS of the true lag. The heartbeat is read before the next one is
+    // written, so a caught-up replica reads as 0.
+    private static void probeReplicas() {
+        long primaryVersion;
+        long primaryNow;
+        try (Connection primary = getConnection()) {
+            try (Statement stmt = primary.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT version, CURRENT_TIMESTAMP(3) FROM replication_heartbeat WHERE id = 1")) {
+                if (!rs.next()) {
+                    return;
+                }
+                primaryVersion = rs.getLong(1);
+                primaryNow = rs.getTimestamp(2).getTime();
+            }
+
+            for (ReplicaEndpoint replica : REPLICAS) {
+                probeReplica(replica, primaryVersion, primaryNow);
+            }
+            writeHeartbeat(primary);
+        } catch (SQLException e) {
+            // Primary down or schema not migrated yet; replica state is left as it was
+        }
+    }
+
+    private static void probeReplica(ReplicaEndpoint replica, long primaryVersion, long primaryNow) {
+        try (Connection conn = openReplica(replica.url, true);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT version, beat_at FROM replication_heartbeat WHERE id = 1")) {
+            long lag = 0;
+            if (!rs.next()) {
+                lag = Long.MAX_VALUE;
+            } else if (rs.getLong(1) < primaryVersion) {
+                lag = Math.max(0, primaryNow - rs.getTimestamp(2).getTime());
+            }
+            replica.update(lag <= MAX_REPLICA_LAG_MS, "lag " + (lag == Long.MAX_VALUE ? "unknown" : lag + " ms"));
+        } catch (SQLException e) {
+            replica.update(false, e.getMessage());
+        }
+    }
+
+    // MySQL URLs get a short connect timeout; probe connections also get a socket timeout
+    // so a stalled replica cannot hang the probe thread. Other drivers use their defaults.
+    private static Connection openReplica(String url, boolean probe) throws SQLException {
+        Properties props = new Properties();
+        props.setProperty("user", USER);
+        props.setProperty("password", PASS);
+        if (url.startsWith("jdbc:mysql:")) {
+            props.setProperty("connectTimeout", String.valueOf(REPLICA_CONNECT_TIMEOUT_MS));
+            if (probe) {
+                props.setProperty("socketTimeout", String.valueOf(REPLICA_CONNECT_TIMEOUT_MS));
+            }
+        }
+        return DriverManager.getConnection(url, props);
+    }
+
+    private static synchronized ReplicaEndpoint nextReplica() {
+        ReplicaEndpoint replica = REPLICAS.get(nextReplica);
+        nextReplica = (nextReplica + 1) % REPLICAS.size();
+        return replica;
+    }
+
+    private static List<ReplicaEndpoint> parseReplicas(String urls) {
+        List<ReplicaEndpoint> replicas = new ArrayList<>();
+        for (String url : urls.split(",")) {
+            if (!url.isBlank()) {
+                replicas.add(new ReplicaEndpoint(url.trim()));
+            }
+        }
+        return replicas;
+    }
+
+    // Failures are thrown rather than shown, so headless callers never touch Swing
+    private static void loadDriver() throws SQLException {
+        if (!DB_URL.startsWith("jdbc:mysql:")) {
+            // Other drivers (e.g. an embedded database for local load tests) register themselves
+            return;
+        }
+        try {
+            Class.forName("com.mysql.cj.jdbc.Driver");
+        } catch (ClassNotFoundException e) {
+            throw new SQLException("MySQL JDBC Driver not found. Include it in your library path.", e);
+        }
+    }
+
+    private static void closeQuietly(Connection conn) {
+        if (conn != null) {
+            try {
+                conn.close();
+            } catch (SQLException ignored) {
+            }
+        }
+    }
+
+    public static void initializeDatabase() throws SQLException {
+        try (Connection conn = getConnection()) {
+            SchemaMigrator.migrate(conn);
+        }
+    }
+
+    public static String getDatabaseUrl() {
+        return DB_URL;
+    }
+
+    // Random id kept in the database itself, so a database recreated at the same URL
+    // is told apart from the one a snapshot was taken from
+    public static String getDatabaseId() throws SQLException {
+        if (databaseId == null) {
+            try (Connection conn = getConnection()) {
+                databaseId = readOrCreateDatabaseId(conn);
+            }
+        }
+        return databaseId;
+    }
+
+    private static String readOrCreateDatabaseId(Connection conn) throws SQLException {
+        String id = readDatabaseId(conn);
+        if (id != null) {
+            return id;
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "INSERT INTO database_identity (id, database_id) VALUES (1, ?)")) {
+            stmt.setString(1, UUID.randomUUID().toString());
+            stmt.executeUpdate();
+        } catch (SQLIntegrityConstraintViolationException e) {
+            // Another client created it first
+        }
+        return readDatabaseId(conn);
+    }
+
+    private static String readDatabaseId(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT database_id FROM database_identity WHERE id = 1")) {
+            return rs.next() ? rs.getString(1) : null;
+        }
+    }
+}
+
+// One versioned schema change. The checksum covers the SQL as written, so editing a
+// migration that has already been applied is detected instead of silently skipped.
+class Migration {
+    final int version;
+    final String description;
+    final List<String> statements;
+    // Index builds that must not block writers on MySQL (ALGORITHM=INPLACE, LOCK=NONE)
+    final boolean online;
+    // Uses MySQL-only DDL such as partitioning; recorded but not run on other databases
+    final boolean mysqlOnly;
+    // Too disruptive for startup (e.g. a full table rebuild); applied only when an operator
+    // runs SchemaMigrator apply <version>
+    final boolean manual;
+    // Part of the schema that databases created before schema_version already have, so
+    // "already exists" errors mean the object is adopted rather than that the migration failed
+    final boolean adoptsExisting;
+
+    private Migration(int version, String description, boolean online, boolean mysqlOnly, boolean manual,
+                      boolean adoptsExisting, List<String> statements) {
+        this.version = version;
+        this.description = description;
+        this.online = online;
+        this.mysqlOnly = mysqlOnly;
+        this.manual = manual;
+        this.adoptsExisting = adoptsExisting;
+        this.statements = statements;
+    }
+
+    static Migration of(int version, String description, String... statements) {
+        return new Migration(version, description, false, false, false, false, List.of(statements));
+    }
+
+    static Migration onlineIndexes(int version, String description, String... indexStatements) {
+        return new Migration(version, description, true, false, false, false, List.of(indexStatements));
+    }
+
+    Migration mysqlOnly() {
+        return new Migration(version, description, online, true, manual, adoptsExisting, statements);
+    }
+
+    Migration manual() {
+        return new Migration(version, description, online, mysqlOnly, true, adoptsExisting, statements);
+    }
+
+    Migration adoptsExisting() {
+        return new Migration(version, description, online, mysqlOnly, manual, true, statements);
+    }
+
+    long checksum() {
+        CRC32 crc = new CRC32();
+        for (String statement : statements) {
+            crc.update(statement.strip().getBytes(StandardCharsets.UTF_8));
+            crc.update(';');
+        }
+        return crc.getValue();
+    }
+}
+
+// Applies pending migrations in version order and records them in schema_version.
+// An up-to-date database costs a single query on startup.
+class SchemaMigrator {
+    // MySQL error codes for objects that already exist; only tolerated for migrations that
+    // adopt the schema created before schema_version existed
+    private static final Set<Integer> ALREADY_EXISTS_ERRORS = Set.of(1050, 1061);
+    private static final String LOCK_NAME = "splitwise_schema_migration";
+    private static final int LOCK_TIMEOUT_SECONDS = 60;
+
+    // Append only: never edit or reorder a migration once it has shipped
+    static final List<Migration> MIGRATIONS = List.of(
+            Migration.of(1, "Create base tables",
+                    """
+                    CREATE TABLE IF NOT EXISTS expenses (
+                        id INT AUTO_INCREMENT PRIMARY KEY,
+                        name VARCHAR(255) NOT NULL,
+                        amount DECIMAL(10,2) NOT NULL,
+                        created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+                    )
+                    """,
+                    """
+                    CREATE TABLE IF NOT EXISTS expense_groups (
+                        id INT AUTO_INCREMENT PRIMARY KEY,
+                        name VARCHAR(255) NOT NULL UNIQUE,
+                        created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+                    )
+                    """,
+                    """
+                    CREATE TABLE IF NOT EXISTS participants (
+                        id INT AUTO_INCREMENT PRIMARY KEY,
+                        name VARCHAR(255) NOT NULL UNIQUE,
+                        email VARCHAR(255),
+                        created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+                    )
+                    """,
+                    """
+                    CREATE TABLE IF NOT EXISTS group_members (
+                        group_id INT,
+                        participant_id INT,
+                        joined_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                        PRIMARY KEY (group_id, participant_id),
+                        FOREIGN KEY (group_id) REFERENCES expense_groups(id),
+                        FOREIGN KEY (participant_id) REFERENCES participants(id)
+                    )
+                    """,
+                    """
+                    CREATE TABLE IF NOT EXISTS expense_shares (
+                        expense_id INT,
+                        participant_id INT,
+                        share_amount DECIMAL(10,2) NOT NULL,
+                        is_paid BOOLEAN DEFAULT FALSE,
+                        PRIMARY KEY (expense_id, participant_id),
+                        FOREIGN KEY (expense_id) REFERENCES expenses(id),
+                        FOREIGN KEY (participant_id) REFERENCES participants(id)
+                    )
+                    """).adoptsExisting(),
+            Migration.onlineIndexes(2, "Create base indexes",
+                    "CREATE INDEX idx_expense_created ON expenses(created_at)",
+                    "CREATE INDEX idx_group_name ON expense_groups(name)",
+                    "CREATE INDEX idx_participant_name ON participants(name)",
+                    "CREATE INDEX idx_expense_shares_paid ON expense_shares(is_paid)").adoptsExisting(),
+            // Rebuilds expense_shares and blocks writes while it copies, so it never runs at
+            // startup. MySQL cannot partition a table that has foreign keys, so they are dropped;
+            // ExpenseStore.insertExpenseShare checks both parents instead. Later ranges are added
+            // by splitting pmax with REORGANIZE PARTITION.
+            Migration.of(3, "Partition expense_shares by expense_id range",
+                    "ALTER TABLE expense_shares DROP FOREIGN KEY expense_shares_ibfk_1",
+                    "ALTER TABLE expense_shares DROP FOREIGN KEY expense_shares_ibfk_2",
+                    """
+                    ALTER TABLE expense_shares PARTITION BY RANGE (expense_id) (
+                        PARTITION p0 VALUES LESS THAN (1000000),
+                        PARTITION p1 VALUES LESS THAN (2000000),
+                        PARTITION p2 VALUES LESS THAN (4000000),
+                        PARTITION p3 VALUES LESS THAN (8000000),
+                        PARTITION pmax VALUES LESS THAN MAXVALUE
+                    )
+                    """).mysqlOnly().manual(),
+            // Keyset scans of unpaid shares for reminder digests; covers the scan, which makes
+            // the low-selectivity is_paid index redundant. Building it reads all of
+            // expense_shares, so like version 3 it is applied by an operator, not at startup.
+            Migration.onlineIndexes(4, "Index unpaid shares by participant",
+                    "CREATE INDEX idx_expense_shares_unpaid ON expense_shares(is_paid, participant_id, expense_id, share_amount)",
+                    "DROP INDEX idx_expense_shares_paid ON expense_shares").manual(),
+            Migration.of(5, "Create reminder outbox",
+                    """
+                    CREATE TABLE IF NOT EXISTS reminder_outbox (
+                        id BIGINT AUTO_INCREMENT PRIMARY KEY,
+                        participant_id INT NOT NULL,
+                        max_expense_id INT NOT NULL,
+                        share_count INT NOT NULL,
+                        total_amount DECIMAL(12,2) NOT NULL,
+                        body TEXT NOT NULL,
+                        created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                        paid_at TIMESTAMP NULL
+                    )
+                    """),
+            // Holds the single row read by DatabaseManager.getDatabaseId
+            Migration.of(6, "Create database identity",
+                    """
+                    CREATE TABLE IF NOT EXISTS database_identity (
+                        id INT PRIMARY KEY,
+                        database_id VARCHAR(36) NOT NULL
+                    )
+                    """),
+            // Version bumped after each write and by the replica probe; see DatabaseManager
+            Migration.of(7, "Create replication heartbeat",
+                    """
+                    CREATE TABLE IF NOT EXISTS replication_heartbeat (
+                        id INT PRIMARY KEY,
+                        version BIGINT NOT NULL,
+                        beat_at TIMESTAMP(3) NOT NULL
+                    )
+                    """,
+                    "INSERT INTO replication_heartbeat (id, version, beat_at) VALUES (1, 0, CURRENT_TIMESTAMP(3))"),
+            // Range scans for the snapshot delta and consistency check on startup
+            Migration.onlineIndexes(8, "Index group members by join time",
+                    "CREATE INDEX idx_group_members_joined ON group_members(joined_at)")
+    );
+
+    // Operator entry point for manual migrations and checksum verification, e.g.
+    //   java -cp .:mysql-connector-j-9.1.0.jar SchemaMigrator apply 3
+    //   java -cp .:mysql-connector-j-9.1.0.jar SchemaMigrator verify
+    public static void main(String[] args) {
+        boolean apply = args.length == 2 && "apply".equals(args[0]);
+        boolean verify = args.length == 1 && "verify".equals(args[0]);
+        if (!apply && !verify) {
+            System.err.println("Usage: SchemaMigrator apply <version> | verify");
+            System.exit(2);
+        }
+
+        try (Connection conn = DatabaseManager.getConnection()) {
+            if (verify) {
+                verify(conn);
+                System.out.println("Checksums of applied schema migrations match");
+                return;
+            }
+            migrate(conn);
+            applyManual(conn, Integer.parseInt(args[1]));
+        } catch (SQLException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    public static void migrate(Connection conn) throws SQLException {
+        int latest = 0;
+        for (Migration migration : MIGRATIONS) {
+            if (!migration.manual) {
+                latest = migration.version;
+            }
+        }
+        if (currentVersion(conn) >= latest) {
+            return;
+        }
+
+        boolean mysql = isMySql(conn);
+        acquireLock(conn, mysql);
+        try {
+            // Another client may have migrated while this one waited for the lock
+            if (currentVersion(conn) < latest) {
+                applyPending(conn, mysql);
+            }
+        } finally {
+            releaseLock(conn, mysql);
+        }
+    }
+
+    private static void applyPending(Connection conn, boolean mysql) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("""
+                CREATE TABLE IF NOT EXISTS schema_version (
+                    version INT PRIMARY KEY,
+                    description VARCHAR(255) NOT NULL,
+                    checksum BIGINT NOT NULL,
+                    applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+                )
+            """);
+        }
+
+        Map<Integer, Long> applied = appliedChecksums(conn);
+        for (Migration migration : MIGRATIONS) {
+            Long checksum = applied.get(migration.version);
+            if (checksum != null) {
+                checkUnchanged(migration, checksum);
+                continue;
+            }
+            if (!migration.manual) {
+                applyAndRecord(conn, migration, mysql);
+            }
+        }
+    }
+
+    // The startup fast path returns on MAX(version) alone, so edits to applied migrations
+    // are only caught here or when a later migration is pending
+    public static void verify(Connection conn) throws SQLException {
+        if (!schemaVersionTableExists(conn)) {
+            return;
+        }
+        Map<Integer, Long> applied = appliedChecksums(conn);
+        for (Migration migration : MIGRATIONS) {
+            Long checksum = applied.get(migration.version);
+            if (checksum != null) {
+                checkUnchanged(migration, checksum);
+            }
+        }
+    }
+
+    private static void checkUnchanged(Migration migration, long checksum) throws SQLException {
+        if (checksum != migration.checksum()) {
+            throw new SQLException("Schema migration " + migration.version + " (" + migration.description
+                    + ") was changed after it was applied");
+        }
+    }
+
+    public static void applyManual(Connection conn, int version) throws SQLException {
+        Migration migration = MIGRATIONS.stream()
+                .filter(m -> m.version == version && m.manual)
+                .findFirst()
+                .orElseThrow(() -> new SQLException("No manual schema migration with version " + version));
+
+        boolean mysql = isMySql(conn);
+        acquireLock(conn, mysql);
+        try {
+            if (appliedChecksums(conn).containsKey(version)) {
+                System.out.println("Schema migration " + version + " is already applied");
+                return;
+            }
+            applyAndRecord(conn, migration, mysql);
+        } finally {
+            releaseLock(conn, mysql);
+        }
+    }
+
+    // MySQL DDL commits implicitly, which would release row locks, so clients serialize on a
+    // named lock instead. Other databases are assumed to be embedded in a single process.
+    private static void acquireLock(Connection conn, boolean mysql) throws SQLException {
+        if (!mysql) {
+            return;
+        }
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            stmt.setString(1, LOCK_NAME);
+            stmt.setInt(2, LOCK_TIMEOUT_SECONDS);
+            ResultSet rs = stmt.executeQuery();
+            if (!rs.next() || rs.getInt(1) != 1) {
+                throw new SQLException("Timed out waiting for another client to finish schema migrations");
+            }
+        }
+    }
+
+    private static void releaseLock(Connection conn, boolean mysql) throws SQLException {
+        if (!mysql) {
+            return;
+        }
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            stmt.setString(1, LOCK_NAME);
+            stmt.executeQuery().close();
+        }
+    }
+
+    private static boolean isMySql(Connection conn) throws SQLException {
+        return conn.getMetaData().getDatabaseProductName().toLowerCase().contains("mysql");
+    }
+
+    private static void applyAndRecord(Connection conn, Migration migration, boolean mysql) throws SQLException {
+        if (!migration.mysqlOnly || mysql) {
+            apply(conn, migration, mysql);
+        }
+        record(conn, migration);
+        System.out.println("Applied schema migration " + migration.version + ": " + migration.description);
+    }
+
+    // Single query on the startup path; a missing table means version 0
+    private static int currentVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MAX(version) FROM schema_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        } catch (SQLException e) {
+            if (!schemaVersionTableExists(conn)) {
+                return 0;
+            }
+            throw e;
+        }
+    }
+
+    // Uses metadata rather than vendor error codes so embedded databases work too
+    private static boolean schemaVersionTableExists(Connection conn) throws SQLException {
+        DatabaseMetaData meta = conn.getMetaData();
+        for (String name : new String[]{"schema_version", "SCHEMA_VERSION"}) {
+            try (ResultSet rs = meta.getTables(conn.getCatalog(), null, name, new String[]{"TABLE"})) {
+                if (rs.next()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static Map<Integer, Long> appliedChecksums(Connection conn) throws SQLException {
+        Map<Integer, Long> applied = new HashMap<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT version, checksum FROM schema_version")) {
+            while (rs.next()) {
+                applied.put(rs.getInt("version"), rs.getLong("checksum"));
+            }
+        }
+        return applied;
+    }
+
+    private static void apply(Connection conn, Migration migration, boolean mysql) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            for (String statement : migration.statements) {
+                String sql = migration.online && mysql ? statement + " ALGORITHM=INPLACE LOCK=NONE" : statement;
+                try {
+                    stmt.execute(sql);
+                } catch (SQLException e) {
+                    if (!migration.adoptsExisting || !ALREADY_EXISTS_ERRORS.contains(e.getErrorCode())) {
+                        throw e;
+                    }
+                }
+            }
+        }
+    }
+
+    private static void record(Connection conn, Migration migration) throws SQLException {
+        String sql = "INSERT INTO schema_version (version, description, checksum) VALUES (?, ?, ?)";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, migration.version);
+            stmt.setString(2, migration.description);
+            stmt.setLong(3, migration.checksum());
+            stmt.executeUpdate();
+        }
+    }
+}
 
-    public Group(String name) {
-        this.name = name;
-        this.members = new HashSet<>();
+// Row-level data operations shared by the UI handlers and the headless load driver
+class ExpenseStore {
+    // Each insert returns the generated id, or -1 if the driver did not report one
+    public static int insertParticipant(Connection conn, String name) throws SQLException {
+        return insertReturningId(conn, "INSERT INTO participants (name) VALUES (?)", name);
     }
 
-    public String getName() { return name; }
-    public Set<String> getMembers() { return members; }
+    public static int insertGroup(Connection conn, String name) throws SQLException {
+        return insertReturningId(conn, "INSERT INTO expense_groups (name) VALUES (?)", name);
+    }
 
-    public boolean addMember(String member) {
-        return members.add(member);
+    public static void insertGroupMember(Connection conn, int groupId, int participantId) throws SQLException {
+        String sql = "INSERT INTO group_members (group_id, participant_id) VALUES (?, ?)";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, groupId);
+            stmt.setInt(2, participantId);
+            stmt.executeUpdate();
+        }
     }
-}
 
-// Custom button class with rounded corners
-class RoundedButton extends JButton {
-    public RoundedButton(String text) {
-        super(text);
-        setOpaque(false);
-        setFocusPainted(false);
-        setBorderPainted(false);
-        setContentAreaFilled(false);
-        setFont(new Font("Segoe UI", Font.BOLD, 14));
-        setForeground(Color.WHITE);
+    public static int insertExpense(Connection conn, String name, double amount) throws SQLException {
+        String sql = "INSERT INTO expenses (name, amount) VALUES (?, ?)";
+        try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            stmt.setString(1, name);
+            stmt.setDouble(2, amount);
+            stmt.executeUpdate();
 
-        addMouseListener(new MouseAdapter() {
-            @Override
-            public void mouseEntered(MouseEvent e) {
-                setBackground(new Color(80, 140, 190));
+            try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
+                return generatedKeys.next() ? generatedKeys.getInt(1) : -1;
             }
+        }
+    }
 
-            @Override
-            public void mouseExited(MouseEvent e) {
-                setBackground(new Color(100, 160, 210));
+    // Inserts only when both the expense and the participant exist. A partitioned
+    // expense_shares has no foreign keys, so this check is what keeps shares pointing at
+    // real rows; the INSERT ... SELECT also locks both parents until the transaction ends.
+    public static void insertExpenseShare(Connection conn, int expenseId, int participantId, double shareAmount)
+            throws SQLException {
+        String sql = """
+            INSERT INTO expense_shares (expense_id, participant_id, share_amount)
+            SELECT e.id, p.id, ?
+            FROM expenses e
+            JOIN participants p ON p.id = ?
+            WHERE e.id = ?
+        """;
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setDouble(1, shareAmount);
+            stmt.setInt(2, participantId);
+            stmt.setInt(3, expenseId);
+            if (stmt.executeUpdate() == 0) {
+                throw new SQLException("Cannot add share: expense " + expenseId + " or participant "
+                        + participantId + " does not exist");
             }
-        });
+        }
     }
 
-    @Override
-    protected void paintComponent(Graphics g) {
-        Graphics2D g2 = (Graphics2D) g.create();
-        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+    // One range update over idx_expense_shares_unpaid; the caller owns the transaction
+    public static int markSharesPaidThrough(Connection conn, int participantId, int maxExpenseId) throws SQLException {
+        String sql = "UPDATE expense_shares SET is_paid = TRUE WHERE participant_id = ? AND is_paid = FALSE AND expense_id <= ?";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, participantId);
+            stmt.setInt(2, maxExpenseId);
+            return stmt.executeUpdate();
+        }
+    }
 
-        if (getModel().isPressed()) {
-            g2.setColor(new Color(60, 120, 170));
-        } else if (getModel().isRollover()) {
-            g2.setColor(new Color(80, 140, 190));
-        } else {
-            g2.setColor(new Color(100, 160, 210));
+    public static int markSharePaid(Connection conn, int expenseId, int participantId) throws SQLException {
+        String sql = "UPDATE expense_shares SET is_paid = TRUE WHERE expense_id = ? AND participant_id = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, expenseId);
+            stmt.setInt(2, participantId);
+            return stmt.executeUpdate();
+        }
+    }
+
+    public static int getGroupId(Connection conn, String groupName) throws SQLException {
+        String sql = "SELECT id FROM expense_groups WHERE name = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, groupName);
+            ResultSet rs = stmt.executeQuery();
+            if (rs.next()) {
+                return rs.getInt("id");
+            }
         }
+        return -1;
+    }
 
-        g2.fill(new RoundRectangle2D.Float(0, 0, getWidth(), getHeight(), 15, 15));
-        g2.dispose();
+    public static int getParticipantId(Connection conn, String participantName) throws SQLException {
+        String sql = "SELECT id FROM participants WHERE name = ?";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, participantName);
+            ResultSet rs = stmt.executeQuery();
+            if (rs.next()) {
+                return rs.getInt("id");
+            }
+        }
+        return -1;
+    }
 
-        super.paintComponent(g);
+    // Table names come from code, never from user input
+    public static long countRows(Connection conn, String table) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    private static int insertReturningId(Connection conn, String sql, String name) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            stmt.setString(1, name);
+            stmt.executeUpdate();
+
+            try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
+                return generatedKeys.next() ? generatedKeys.getInt(1) : -1;
+            }
+        }
     }
 }
-//jdbc:mysql://localhost:3306/splitwise_clone
-//jdbc:sqlserver://server:port;DatabaseName=dbname
-class DatabaseManager {
-    private static final String DB_URL = "jdbc:mysql://localhost:3306/splitwise_clone";
-    private static final String USER = "root";
-    private static final String PASS = "DB!d43m0n";
 
-    public static Connection getConnection() throws SQLException {
+// Highest id up to which every row of a table is known to be committed. AUTO_INCREMENT
+// ids are handed out before commit, so a gap below a visible row may be a transaction
+// still in flight that commits later. A gap is only passed once the row above it was
+// created before the horizon: the transaction holding the lower id started even earlier,
+// and is taken to have committed or rolled back by then.
+class CommitCutoff {
+    // Longest a write transaction is expected to stay open
+    static final long IN_FLIGHT_GRACE_MS = 10 * 60 * 1000;
+
+    private final int start;
+    private final long horizon;
+    // id << 1, low bit set when the row was created before the horizon
+    private long[] rows = new long[64];
+    private int count;
+    private int passed;
+
+    // start is the previous cutoff; horizon is database time minus IN_FLIGHT_GRACE_MS
+    CommitCutoff(int start, long horizon) {
+        this.start = start;
+        this.horizon = horizon;
+    }
+
+    void add(int id, Timestamp createdAt) {
+        if (count == rows.length) {
+            rows = Arrays.copyOf(rows, count * 2);
+        }
+        boolean settled = createdAt != null && createdAt.getTime() < horizon;
+        rows[count++] = ((long) id << 1) | (settled ? 1 : 0);
+    }
+
+    int get() {
+        Arrays.sort(rows, 0, count);
+        int cutoff = start;
+        passed = 0;
+        for (int i = 0; i < count; i++) {
+            int id = (int) (rows[i] >>> 1);
+            if (id <= cutoff) {
+                continue;
+            }
+            if (id != cutoff + 1 && (rows[i] & 1) == 0) {
+                break;
+            }
+            cutoff = id;
+            passed++;
+        }
+        return cutoff;
+    }
+
+    // Rows added here that are at or below the cutoff from the last get()
+    int passedCount() {
+        return passed;
+    }
+}
+
+// Binary snapshot of the in-memory client state, used to skip the full reload on startup.
+// Layout (big-endian): magic, format version, database id, commit cutoffs, row counts, then
+// participants, groups with their members, and expenses as length-prefixed UTF-8 strings.
+class StateSnapshot {
+    private static final int MAGIC = 0x53574353; // "SWCS"
+    private static final int FORMAT_VERSION = 3;
+    private static final Path SNAPSHOT_FILE =
+            Paths.get(System.getProperty("user.home"), ".splitwise_clone", "state.snapshot");
+
+    // Every row at or below these ids is in the snapshot; rows above them are read again
+    int participantCutoff;
+    int groupCutoff;
+    int expenseCutoff;
+    // Members that joined at or after this database time are read again
+    long membersJoinedSince;
+    // Rows at or below each cutoff, and members that joined before membersJoinedSince.
+    // A lower count in the database means rows were deleted since.
+    int participantRows;
+    int groupRows;
+    int expenseRows;
+    int memberRows;
+
+    final List<String> participants = new ArrayList<>();
+    final Map<String, Set<String>> groups = new LinkedHashMap<>();
+    final List<Expense> expenses = new ArrayList<>();
+
+    public static boolean isEnabled() {
+        return !"false".equalsIgnoreCase(System.getProperty("splitwise.snapshot"));
+    }
+
+    // Returns null when there is no usable snapshot for the current database
+    public static StateSnapshot load() {
+        if (!isEnabled() || !Files.isRegularFile(SNAPSHOT_FILE)) {
+            return null;
+        }
+
         try {
-            Class.forName("com.mysql.cj.jdbc.Driver");
-        } catch (ClassNotFoundException e) {
+            // Read onto the heap rather than mapped, so the file is not held open until GC
+            // and save() can replace it on Windows
+            ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(SNAPSHOT_FILE));
+            if (buf.getInt() != MAGIC || buf.getInt() != FORMAT_VERSION) {
+                return null;
+            }
+            if (!DatabaseManager.getDatabaseId().equals(readString(buf))) {
+                return null;
+            }
+
+            StateSnapshot snapshot = new StateSnapshot();
+            snapshot.participantCutoff = buf.getInt();
+            snapshot.groupCutoff = buf.getInt();
+            snapshot.expenseCutoff = buf.getInt();
+            snapshot.membersJoinedSince = buf.getLong();
+            snapshot.participantRows = buf.getInt();
+            snapshot.groupRows = buf.getInt();
+            snapshot.expenseRows = buf.getInt();
+            snapshot.memberRows = buf.getInt();
+
+            int participantCount = buf.getInt();
+            for (int i = 0; i < participantCount; i++) {
+                snapshot.participants.add(readString(buf));
+            }
+
+            int groupCount = buf.getInt();
+            for (int i = 0; i < groupCount; i++) {
+                String groupName = readString(buf);
+                int memberCount = buf.getInt();
+                Set<String> members = new HashSet<>(memberCount * 2);
+                for (int j = 0; j < memberCount; j++) {
+                    members.add(readString(buf));
+                }
+                snapshot.groups.put(groupName, members);
+            }
+
+            int expenseCount = buf.getInt();
+            for (int i = 0; i < expenseCount; i++) {
+                int id = buf.getInt();
+                String name = readString(buf);
+                double amount = buf.getDouble();
+                snapshot.expenses.add(new Expense(id, name, amount));
+            }
+            return snapshot;
+        } catch (IOException | SQLException | RuntimeException e) {
+            // A truncated or corrupt snapshot just means a full load
             e.printStackTrace();
-            JOptionPane.showMessageDialog(null, "MySQL JDBC Driver not found. Include it in your library path.");
+            return null;
         }
-        return DriverManager.getConnection(DB_URL, USER, PASS);
     }
 
-    public static void initializeDatabase() {
-        try (Connection conn = getConnection()) {
-            Statement stmt = conn.createStatement();
+    public void save() throws IOException, SQLException {
+        String databaseId = DatabaseManager.getDatabaseId();
+        Files.createDirectories(SNAPSHOT_FILE.getParent());
+        Path tmp = SNAPSHOT_FILE.resolveSibling(SNAPSHOT_FILE.getFileName() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            writeString(out, databaseId);
+            out.writeInt(participantCutoff);
+            out.writeInt(groupCutoff);
+            out.writeInt(expenseCutoff);
+            out.writeLong(membersJoinedSince);
+            out.writeInt(participantRows);
+            out.writeInt(groupRows);
+            out.writeInt(expenseRows);
+            out.writeInt(memberRows);
+
+            out.writeInt(participants.size());
+            for (String participant : participants) {
+                writeString(out, participant);
+            }
 
-            // Create expenses table
-            stmt.execute("""
-                CREATE TABLE IF NOT EXISTS expenses (
-                    id INT AUTO_INCREMENT PRIMARY KEY,
-                    name VARCHAR(255) NOT NULL,
-                    amount DECIMAL(10,2) NOT NULL,
-                    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
-                )
-            """);
+            out.writeInt(groups.size());
+            for (Map.Entry<String, Set<String>> entry : groups.entrySet()) {
+                writeString(out, entry.getKey());
+                out.writeInt(entry.getValue().size());
+                for (String member : entry.getValue()) {
+                    writeString(out, member);
+                }
+            }
 
-            // Create expense_groups table (renamed from groups)
-            stmt.execute("""
-                CREATE TABLE IF NOT EXISTS expense_groups (
-                    id INT AUTO_INCREMENT PRIMARY KEY,
-                    name VARCHAR(255) NOT NULL UNIQUE,
-                    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
-                )
-            """);
+            out.writeInt(expenses.size());
+            for (Expense expense : expenses) {
+                out.writeInt(expense.getId());
+                writeString(out, expense.getName());
+                out.writeDouble(expense.getAmount());
+            }
+        }
 
-            // Create participants table
-            stmt.execute("""
-                CREATE TABLE IF NOT EXISTS participants (
-                    id INT AUTO_INCREMENT PRIMARY KEY,
-                    name VARCHAR(255) NOT NULL UNIQUE,
-                    email VARCHAR(255),
-                    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
-                )
-            """);
+        Files.move(tmp, SNAPSHOT_FILE, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
 
-            // Create group_members junction table
-            stmt.execute("""
-                CREATE TABLE IF NOT EXISTS group_members (
-                    group_id INT,
-                    participant_id INT,
-                    joined_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-                    PRIMARY KEY (group_id, participant_id),
-                    FOREIGN KEY (group_id) REFERENCES expense_groups(id),
-                    FOREIGN KEY (participant_id) REFERENCES participants(id)
-                )
-            """);
+    // Deletes by other clients are not visible through the cutoffs, so the snapshot is only
+    // used while the database still holds as many rows below them as it did
+    public boolean matchesDatabase(Connection conn) throws SQLException {
+        return countRows(conn, "SELECT COUNT(*) FROM participants WHERE id <= ?", participantCutoff) == participantRows
+                && countRows(conn, "SELECT COUNT(*) FROM expense_groups WHERE id <= ?", groupCutoff) == groupRows
+                && countRows(conn, "SELECT COUNT(*) FROM expenses WHERE id <= ?", expenseCutoff) == expenseRows
+                && countMembersBefore(conn, membersJoinedSince) == memberRows;
+    }
 
-            // Create expense_shares table
-            stmt.execute("""
-                CREATE TABLE IF NOT EXISTS expense_shares (
-                    expense_id INT,
-                    participant_id INT,
-                    share_amount DECIMAL(10,2) NOT NULL,
-                    is_paid BOOLEAN DEFAULT FALSE,
-                    PRIMARY KEY (expense_id, participant_id),
-                    FOREIGN KEY (expense_id) REFERENCES expenses(id),
-                    FOREIGN KEY (participant_id) REFERENCES participants(id)
-                )
-            """);
+    static int countMembersBefore(Connection conn, long joinedBefore) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT COUNT(*) FROM group_members WHERE joined_at < ?")) {
+            stmt.setTimestamp(1, new Timestamp(joinedBefore));
+            ResultSet rs = stmt.executeQuery();
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
 
-            // Create indexes
-            stmt.execute("CREATE INDEX IF NOT EXISTS idx_expense_created ON expenses(created_at)");
-            stmt.execute("CREATE INDEX IF NOT EXISTS idx_group_name ON expense_groups(name)");
-            stmt.execute("CREATE INDEX IF NOT EXISTS idx_participant_name ON participants(name)");
-            stmt.execute("CREATE INDEX IF NOT EXISTS idx_expense_shares_paid ON expense_shares(is_paid)");
+    private static int countRows(Connection conn, String sql, int cutoff) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, cutoff);
+            ResultSet rs = stmt.executeQuery();
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
 
-        } catch (SQLException e) {
+    // This client's own deletes drop the snapshot straight away
+    public static void invalidate() {
+        try {
+            Files.deleteIfExists(SNAPSHOT_FILE);
+        } catch (IOException e) {
             e.printStackTrace();
-            JOptionPane.showMessageDialog(null, "Failed to initialize database: " + e.getMessage());
         }
     }
+
+    private static String readString(ByteBuffer buf) {
+        byte[] bytes = new byte[buf.getInt()];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
 }
 
 
@@ -186,10 +1436,18 @@ class SplitwiseClone extends JFrame {
     private JTextArea expenseList;
     private RoundedButton addExpenseButton, addParticipantButton, calculateButton, createGroupButton, addToGroupButton;
     private JList<String> participantList, groupList, groupMemberList;
-    private DefaultListModel<String> participantListModel, groupListModel, groupMemberListModel;
-    private ArrayList<Expense> expenses;
-    private HashMap<String, Group> groups;
-
+    private BulkListModel<String> participantListModel, groupListModel, groupMemberListModel;
+    // Set when synthetic benchmark rows are in the participant list, so they are never saved
+    private boolean listBenchmarkRun;
+    private final DomainRegistry registry = new DomainRegistry();
+
+    // Commit cutoffs of the rows reflected in memory, persisted with the state snapshot
+    private int participantCutoff, groupCutoff, expenseCutoff;
+    private long membersJoinedSince;
+    private int participantRows, groupRows, expenseRows, memberRows;
+
+    private static final int SNAPSHOT_INTERVAL_MS = 5 * 60 * 1000;
+    private static final int SNAPSHOT_EXIT_WAIT_MS = 10_000;
     private static final Color BACKGROUND_COLOR = new Color(240, 240, 250);
     private static final Color ACCENT_COLOR = new Color(70, 130, 180);
     private static final Color BUTTON_COLOR = new Color(100, 160, 210);
@@ -197,12 +1455,6 @@ class SplitwiseClone extends JFrame {
     private static final Font INPUT_FONT = new Font("Segoe UI", Font.PLAIN, 14);
 
     public SplitwiseClone() {
-        expenses = new ArrayList<>();
-        groups = new HashMap<>();
-
-        // Initialize database
-        DatabaseManager.initializeDatabase();
-
         setTitle("Splitwise Clone");
         setSize(800, 600);
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -210,7 +1462,19 @@ class SplitwiseClone extends JFrame {
         getContentPane().setBackground(BACKGROUND_COLOR);
 
         setupUI();
-        loadDataFromDatabase();
+
+        long start = System.nanoTime();
+        StateSnapshot snapshot = StateSnapshot.load();
+        boolean fromSnapshot = snapshot != null && loadDataFromSnapshot(snapshot);
+        if (!fromSnapshot) {
+            loadDataFromDatabase();
+        }
+        if (Boolean.getBoolean("splitwise.loadTiming")) {
+            System.out.printf("Loaded state in %.1f ms (%s)%n",
+                    (System.nanoTime() - start) / 1_000_000.0, fromSnapshot ? "snapshot + delta" : "full load");
+        }
+
+        setupSnapshotSaving();
     }
 
     private void setupUI() {
@@ -247,9 +1511,9 @@ class SplitwiseClone extends JFrame {
         addToGroupButton = new RoundedButton("Add to Group");
         mainPanel.add(expenseScrollPane, BorderLayout.EAST);
 
-        participantListModel = new DefaultListModel<>();
-        groupListModel = new DefaultListModel<>();
-        groupMemberListModel = new DefaultListModel<>();
+        participantListModel = new BulkListModel<>();
+        groupListModel = new BulkListModel<>();
+        groupMemberListModel = new BulkListModel<>();
 
         participantList = new JList<>(participantListModel);
         groupList = new JList<>(groupListModel);
@@ -264,6 +1528,17 @@ class SplitwiseClone extends JFrame {
         participantList.setFont(INPUT_FONT);
         groupList.setFont(INPUT_FONT);
         groupMemberList.setFont(INPUT_FONT);
+
+        setFixedRowHeight(participantList);
+        setFixedRowHeight(groupList);
+        setFixedRowHeight(groupMemberList);
+    }
+
+    // Fixes only the row height, so JList never measures rows one by one for it. Widths are
+    // still measured, so names longer than usual widen the list and scroll horizontally.
+    private static void setFixedRowHeight(JList<String> list) {
+        Component cell = list.getCellRenderer().getListCellRendererComponent(list, "Xg", 0, false, false);
+        list.setFixedCellHeight(cell.getPreferredSize().height);
     }
     private void addLabelAndField(JPanel panel, String labelText, JTextField textField, GridBagConstraints gbc, int gridy) {
         gbc.gridx = 0;
@@ -310,39 +1585,63 @@ class SplitwiseClone extends JFrame {
     }
 
     private void loadDataFromDatabase() {
-        try (Connection conn = DatabaseManager.getConnection()) {
+        try (Connection conn = DatabaseManager.getReadConnection()) {
+            long horizon = databaseTime(conn) - CommitCutoff.IN_FLIGHT_GRACE_MS;
+
             // Load participants
-            String sql = "SELECT name FROM participants";
+            String sql = "SELECT id, name, created_at FROM participants";
+            List<String> participantNames = new ArrayList<>();
+            CommitCutoff participantIds = new CommitCutoff(0, horizon);
             try (PreparedStatement stmt = conn.prepareStatement(sql)) {
                 ResultSet rs = stmt.executeQuery();
                 while (rs.next()) {
-                    participantListModel.addElement(rs.getString("name"));
+                    String name = rs.getString("name");
+                    registry.addParticipant(name);
+                    participantNames.add(name);
+                    participantIds.add(rs.getInt("id"), rs.getTimestamp("created_at"));
                 }
             }
+            participantListModel.addAll(participantNames);
 
             // Load groups
-            sql = "SELECT name FROM expense_groups";
+            sql = "SELECT id, name, created_at FROM expense_groups";
+            List<String> groupNames = new ArrayList<>();
+            CommitCutoff groupIds = new CommitCutoff(0, horizon);
             try (PreparedStatement stmt = conn.prepareStatement(sql)) {
                 ResultSet rs = stmt.executeQuery();
                 while (rs.next()) {
-                    String groupName = rs.getString("name");
-                    groupListModel.addElement(groupName);
-                    loadGroupMembers(conn, groupName);
+                    groupNames.add(rs.getString("name"));
+                    groupIds.add(rs.getInt("id"), rs.getTimestamp("created_at"));
                 }
             }
+            for (String groupName : groupNames) {
+                loadGroupMembers(conn, groupName);
+            }
+            groupListModel.addAll(groupNames);
 
             // Load expenses
-            sql = "SELECT name, amount FROM expenses ORDER BY created_at DESC";
+            sql = "SELECT id, name, amount, created_at FROM expenses ORDER BY created_at DESC, id DESC";
+            CommitCutoff expenseIds = new CommitCutoff(0, horizon);
             try (PreparedStatement stmt = conn.prepareStatement(sql)) {
                 ResultSet rs = stmt.executeQuery();
                 while (rs.next()) {
-                    expenses.add(new Expense(
+                    registry.addExpense(new Expense(
                             rs.getInt("id"),
                             rs.getString("name"),
                             rs.getDouble("amount")
                     ));
+                    expenseIds.add(rs.getInt("id"), rs.getTimestamp("created_at"));
                 }
             }
+
+            participantCutoff = participantIds.get();
+            groupCutoff = groupIds.get();
+            expenseCutoff = expenseIds.get();
+            membersJoinedSince = horizon;
+            participantRows = participantIds.passedCount();
+            groupRows = groupIds.passedCount();
+            expenseRows = expenseIds.passedCount();
+            memberRows = StateSnapshot.countMembersBefore(conn, horizon);
             updateExpenseList();
         } catch (SQLException e) {
             e.printStackTrace();
@@ -350,6 +1649,210 @@ class SplitwiseClone extends JFrame {
         }
     }
 
+    // Returns false, leaving the state untouched, when rows in the snapshot were deleted
+    // from the database since it was taken
+    private boolean loadDataFromSnapshot(StateSnapshot snapshot) {
+        Connection conn;
+        try {
+            conn = DatabaseManager.getReadConnection();
+            if (!snapshot.matchesDatabase(conn)) {
+                conn.close();
+                return false;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+
+        for (String participant : snapshot.participants) {
+            registry.addParticipant(participant);
+        }
+        participantListModel.addAll(snapshot.participants);
+        for (Map.Entry<String, Set<String>> entry : snapshot.groups.entrySet()) {
+            registry.getOrCreateGroup(entry.getKey()).addMembers(entry.getValue());
+        }
+        groupListModel.addAll(snapshot.groups.keySet());
+        registry.addExpenses(snapshot.expenses);
+
+        participantCutoff = snapshot.participantCutoff;
+        groupCutoff = snapshot.groupCutoff;
+        expenseCutoff = snapshot.expenseCutoff;
+        membersJoinedSince = snapshot.membersJoinedSince;
+        participantRows = snapshot.participantRows;
+        groupRows = snapshot.groupRows;
+        expenseRows = snapshot.expenseRows;
+        memberRows = snapshot.memberRows;
+
+        try (conn) {
+            loadChangesSinceSnapshot(conn);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            showError("Failed to load recent changes from database: " + e.getMessage());
+        }
+        updateExpenseList();
+        return true;
+    }
+
+    // Fetches the rows above the snapshot's commit cutoffs. Rows that were already above
+    // them when the snapshot was taken come back again and are skipped.
+    private void loadChangesSinceSnapshot(Connection conn) throws SQLException {
+        long horizon = databaseTime(conn) - CommitCutoff.IN_FLIGHT_GRACE_MS;
+
+        String sql = "SELECT id, name, created_at FROM participants WHERE id > ? ORDER BY id";
+        CommitCutoff participantIds = new CommitCutoff(participantCutoff, horizon);
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, participantCutoff);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                String name = rs.getString("name");
+                if (registry.addParticipant(name)) {
+                    participantListModel.addElement(name);
+                }
+                participantIds.add(rs.getInt("id"), rs.getTimestamp("created_at"));
+            }
+        }
+
+        sql = "SELECT id, name, created_at FROM expense_groups WHERE id > ? ORDER BY id";
+        CommitCutoff groupIds = new CommitCutoff(groupCutoff, horizon);
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, groupCutoff);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                String groupName = rs.getString("name");
+                if (registry.addGroup(groupName)) {
+                    groupListModel.addElement(groupName);
+                }
+                groupIds.add(rs.getInt("id"), rs.getTimestamp("created_at"));
+            }
+        }
+
+        // joined_at is set at insert, so a member committed since the last load joined
+        // no earlier than that load's horizon
+        sql = """
+            SELECT g.name AS group_name, p.name AS participant_name
+            FROM group_members gm
+            JOIN expense_groups g ON gm.group_id = g.id
+            JOIN participants p ON gm.participant_id = p.id
+            WHERE gm.joined_at >= ?
+        """;
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setTimestamp(1, new Timestamp(membersJoinedSince));
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                Group group = registry.getGroup(rs.getString("group_name"));
+                if (group != null) {
+                    group.addMember(rs.getString("participant_name"));
+                }
+            }
+        }
+
+        sql = "SELECT id, name, amount, created_at FROM expenses WHERE id > ? ORDER BY created_at DESC, id DESC";
+        CommitCutoff expenseIds = new CommitCutoff(expenseCutoff, horizon);
+        Set<Integer> knownExpenses = new HashSet<>();
+        for (Expense expense : registry.getExpenses()) {
+            if (expense.getId() > expenseCutoff) {
+                knownExpenses.add(expense.getId());
+            }
+        }
+        List<Expense> newExpenses = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setInt(1, expenseCutoff);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                int id = rs.getInt("id");
+                if (!knownExpenses.contains(id)) {
+                    newExpenses.add(new Expense(id, rs.getString("name"), rs.getDouble("amount")));
+                }
+                expenseIds.add(id, rs.getTimestamp("created_at"));
+            }
+        }
+        registry.addNewestExpenses(newExpenses);
+
+        participantCutoff = participantIds.get();
+        groupCutoff = groupIds.get();
+        expenseCutoff = expenseIds.get();
+        membersJoinedSince = horizon;
+        participantRows += participantIds.passedCount();
+        groupRows += groupIds.passedCount();
+        expenseRows += expenseIds.passedCount();
+        memberRows = StateSnapshot.countMembersBefore(conn, horizon);
+    }
+
+    // Database clock, so cutoffs compare against created_at without client clock skew
+    private static long databaseTime(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT CURRENT_TIMESTAMP")) {
+            rs.next();
+            return rs.getTimestamp(1).getTime();
+        }
+    }
+
+    private void setupSnapshotSaving() {
+        if (!StateSnapshot.isEnabled()) {
+            return;
+        }
+
+        // The state is copied on the EDT; serializing and writing it happens on this thread
+        ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "snapshot-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        javax.swing.Timer timer = new javax.swing.Timer(SNAPSHOT_INTERVAL_MS, e -> saveSnapshot(writer));
+        timer.start();
+
+        // The frame exits once the listeners return, so the last write is waited for here
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                timer.stop();
+                Future<?> write = saveSnapshot(writer);
+                if (write == null) {
+                    return;
+                }
+                try {
+                    write.get(SNAPSHOT_EXIT_WAIT_MS, TimeUnit.MILLISECONDS);
+                } catch (Exception ex) {
+                    System.err.println("Snapshot not written before exit: " + ex);
+                }
+            }
+        });
+    }
+
+    // Must be called on the EDT; returns null when there is nothing to save
+    private Future<?> saveSnapshot(ExecutorService writer) {
+        if (listBenchmarkRun) {
+            return null;
+        }
+
+        StateSnapshot snapshot = new StateSnapshot();
+        snapshot.participantCutoff = participantCutoff;
+        snapshot.groupCutoff = groupCutoff;
+        snapshot.expenseCutoff = expenseCutoff;
+        snapshot.membersJoinedSince = membersJoinedSince;
+        snapshot.participantRows = participantRows;
+        snapshot.groupRows = groupRows;
+        snapshot.expenseRows = expenseRows;
+        snapshot.memberRows = memberRows;
+
+        for (int i = 0; i < participantListModel.size(); i++) {
+            snapshot.participants.add(participantListModel.get(i));
+        }
+        for (int i = 0; i < groupListModel.size(); i++) {
+            String groupName = groupListModel.get(i);
+            snapshot.groups.put(groupName, registry.getGroup(groupName).getMembers());
+        }
+        snapshot.expenses.addAll(registry.getExpenses());
+
+        return writer.submit(() -> {
+            try {
+                snapshot.save();
+            } catch (IOException | SQLException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
     private void loadGroupMembers(Connection conn, String groupName) throws SQLException {
         String sql = """
             SELECT p.name 
@@ -359,15 +1862,15 @@ class SplitwiseClone extends JFrame {
             WHERE g.name = ?
         """;
 
-        Group group = new Group(groupName);
+        List<String> members = new ArrayList<>();
         try (PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, groupName);
             ResultSet rs = stmt.executeQuery();
             while (rs.next()) {
-                group.addMember(rs.getString("name"));
+                members.add(rs.getString("name"));
             }
         }
-        groups.put(groupName, group);
+        registry.getOrCreateGroup(groupName).addMembers(members);
     }
 
     private void addExpense() {
@@ -383,22 +1886,14 @@ class SplitwiseClone extends JFrame {
             double amount = Double.parseDouble(amountText);
 
             try (Connection conn = DatabaseManager.getConnection()) {
-                String sql = "INSERT INTO expenses (name, amount) VALUES (?, ?)";
-                try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-                    stmt.setString(1, name);
-                    stmt.setDouble(2, amount);
-                    stmt.executeUpdate();
-
-                    // Get the generated ID
-                    try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
-                        if (generatedKeys.next()) {
-                            int id = generatedKeys.getInt(1);
-                            expenses.add(new Expense(id, name, amount));
-                            updateExpenseList();
-                            expenseNameField.setText("");
-                            expenseAmountField.setText("");
-                        }
-                    }
+                int id = ExpenseStore.insertExpense(conn, name, amount);
+                DatabaseManager.recordWrite(conn);
+
+                if (id != -1) {
+                    registry.addNewestExpense(new Expense(id, name, amount));
+                    updateExpenseList();
+                    expenseNameField.setText("");
+                    expenseAmountField.setText("");
                 }
             } catch (SQLException e) {
                 e.printStackTrace();
@@ -416,14 +1911,12 @@ class SplitwiseClone extends JFrame {
             return;
         }
 
-        if (!participantListModel.contains(name)) {
+        if (!registry.hasParticipant(name)) {
             try (Connection conn = DatabaseManager.getConnection()) {
-                String sql = "INSERT INTO participants (name) VALUES (?)";
-                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                    stmt.setString(1, name);
-                    stmt.executeUpdate();
-                }
+                ExpenseStore.insertParticipant(conn, name);
+                DatabaseManager.recordWrite(conn);
 
+                registry.addParticipant(name);
                 participantListModel.addElement(name);
                 participantField.setText("");
             } catch (SQLException e) {
@@ -442,15 +1935,12 @@ class SplitwiseClone extends JFrame {
             return;
         }
 
-        if (!groups.containsKey(name)) {
+        if (!registry.hasGroup(name)) {
             try (Connection conn = DatabaseManager.getConnection()) {
-                String sql = "INSERT INTO expense_groups (name) VALUES (?)";
-                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                    stmt.setString(1, name);
-                    stmt.executeUpdate();
-                }
+                ExpenseStore.insertGroup(conn, name);
+                DatabaseManager.recordWrite(conn);
 
-                groups.put(name, new Group(name));
+                registry.addGroup(name);
                 groupListModel.addElement(name);
                 groupNameField.setText("");
             } catch (SQLException e) {
@@ -471,62 +1961,33 @@ class SplitwiseClone extends JFrame {
             return;
         }
 
-        Group group = groups.get(groupName);
-        if (group.getMembers().contains(participantName)) {
+        Group group = registry.getGroup(groupName);
+        if (group.hasMember(participantName)) {
             showError("Participant is already a member of the group.");
             return;
         }
 
         try (Connection conn = DatabaseManager.getConnection()) {
             // Get IDs for group and participant
-            int groupId = getGroupId(conn, groupName);
-            int participantId = getParticipantId(conn, participantName);
+            int groupId = ExpenseStore.getGroupId(conn, groupName);
+            int participantId = ExpenseStore.getParticipantId(conn, participantName);
 
             if (groupId == -1 || participantId == -1) {
                 showError("Failed to find group or participant in database.");
                 return;
             }
 
-            // Add to group_members table
-            String sql = "INSERT INTO group_members (group_id, participant_id) VALUES (?, ?)";
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                stmt.setInt(1, groupId);
-                stmt.setInt(2, participantId);
-                stmt.executeUpdate();
-            }
-
-            if (group.addMember(participantName)) {
-                updateGroupMemberList();
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-            showError("Failed to add member to group: " + e.getMessage());
-        }
-    }
-
-
-    private int getGroupId(Connection conn, String groupName) throws SQLException {
-        String sql = "SELECT id FROM expense_groups WHERE name = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, groupName);
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                return rs.getInt("id");
-            }
-        }
-        return -1;
-    }
+            // Add to group_members table
+            ExpenseStore.insertGroupMember(conn, groupId, participantId);
+            DatabaseManager.recordWrite(conn);
 
-    private int getParticipantId(Connection conn, String participantName) throws SQLException {
-        String sql = "SELECT id FROM participants WHERE name = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, participantName);
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                return rs.getInt("id");
+            if (group.addMember(participantName)) {
+                updateGroupMemberList();
             }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            showError("Failed to add member to group: " + e.getMessage());
         }
-        return -1;
     }
 
     private void calculateSplit() {
@@ -536,8 +1997,8 @@ class SplitwiseClone extends JFrame {
             return;
         }
 
-        Group group = groups.get(selectedGroup);
-        if (group.getMembers().isEmpty() || expenses.isEmpty()) {
+        Group group = registry.getGroup(selectedGroup);
+        if (group.getMemberCount() == 0 || !registry.hasExpenses()) {
             showError("Add group members and expenses first.");
             return;
         }
@@ -585,17 +2046,13 @@ class SplitwiseClone extends JFrame {
                         .append("\n");
 
                 // Store split in database
-                int participantId = getParticipantId(conn, member);
+                int participantId = ExpenseStore.getParticipantId(conn, member);
                 if (participantId != -1) {
-                    sql = "INSERT INTO expense_shares (expense_id, participant_id, share_amount) VALUES (?, ?, ?)";
-                    try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                        stmt.setInt(1, 1); // Assuming first expense for simplicity
-                        stmt.setInt(2, participantId);
-                        stmt.setDouble(3, splitAmount);
-                        stmt.executeUpdate();
-                    }
+                    // Assuming first expense for simplicity
+                    ExpenseStore.insertExpenseShare(conn, 1, participantId, splitAmount);
                 }
             }
+            DatabaseManager.recordWrite(conn);
 
             JTextArea textArea = new JTextArea(result.toString());
             textArea.setEditable(false);
@@ -654,7 +2111,7 @@ class SplitwiseClone extends JFrame {
 
     private void updateExpenseList() {
         StringBuilder sb = new StringBuilder("Recent Expenses:\n\n");
-        for (Expense expense : expenses) {
+        for (Expense expense : registry.getExpenses()) {
             sb.append(expense.toString()).append("\n");
         }
         expenseList.setText(sb.toString());
@@ -662,14 +2119,38 @@ class SplitwiseClone extends JFrame {
 
     private void updateGroupMemberList() {
         String selectedGroup = groupList.getSelectedValue();
-        groupMemberListModel.clear();
+        Group group = selectedGroup != null ? registry.getGroup(selectedGroup) : null;
+        if (group != null) {
+            groupMemberListModel.replaceWith(group.getMembers());
+        } else {
+            groupMemberListModel.clear();
+        }
+    }
 
-        if (selectedGroup != null && groups.containsKey(selectedGroup)) {
-            Group group = groups.get(selectedGroup);
-            for (String member : group.getMembers()) {
-                groupMemberListModel.addElement(member);
-            }
+    // Fills the participant list with synthetic rows and times scrolling through it.
+    // Enabled with -Dsplitwise.listBenchmark=<rows>; nothing is written to the database.
+    private void runListBenchmark(int rows) {
+        listBenchmarkRun = true;
+
+        List<String> names = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            names.add(String.format("Benchmark participant %06d", i));
         }
+        long loadStart = System.nanoTime();
+        participantListModel.addAll(names);
+        long loadNanos = System.nanoTime() - loadStart;
+
+        int frames = 300;
+        long paintStart = System.nanoTime();
+        for (int i = 0; i < frames; i++) {
+            int row = (int) ((long) i * (participantListModel.size() - 1) / (frames - 1));
+            participantList.ensureIndexIsVisible(row);
+            participantList.paintImmediately(participantList.getVisibleRect());
+        }
+        double paintSeconds = (System.nanoTime() - paintStart) / 1_000_000_000.0;
+
+        System.out.printf("List benchmark: %d rows loaded in %.1f ms, %.1f frames/s while scrolling%n",
+                rows, loadNanos / 1_000_000.0, frames / paintSeconds);
     }
 
     private void showError(String message) {
@@ -684,12 +2165,8 @@ class SplitwiseClone extends JFrame {
     // Additional utility methods for database operations
     private void markExpenseAsPaid(int expenseId, int participantId) {
         try (Connection conn = DatabaseManager.getConnection()) {
-            String sql = "UPDATE expense_shares SET is_paid = TRUE WHERE expense_id = ? AND participant_id = ?";
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                stmt.setInt(1, expenseId);
-                stmt.setInt(2, participantId);
-                stmt.executeUpdate();
-            }
+            ExpenseStore.markSharePaid(conn, expenseId, participantId);
+            DatabaseManager.recordWrite(conn);
         } catch (SQLException e) {
             e.printStackTrace();
             showError("Failed to mark expense as paid: " + e.getMessage());
@@ -712,8 +2189,11 @@ class SplitwiseClone extends JFrame {
                 stmt.executeUpdate();
             }
 
+            DatabaseManager.recordWrite(conn);
+
             // Update the local list
-            expenses.removeIf(e -> e.getId() == expenseId);
+            StateSnapshot.invalidate();
+            registry.removeExpense(expenseId);
             updateExpenseList();
         } catch (SQLException e) {
             e.printStackTrace();
@@ -737,10 +2217,13 @@ class SplitwiseClone extends JFrame {
                 stmt.executeUpdate();
             }
 
+            DatabaseManager.recordWrite(conn);
+
             // Update the UI
+            StateSnapshot.invalidate();
             String groupName = groupList.getSelectedValue();
             if (groupName != null) {
-                groups.remove(groupName);
+                registry.removeGroup(groupName);
                 groupListModel.removeElement(groupName);
                 groupMemberListModel.clear();
             }
@@ -751,7 +2234,7 @@ class SplitwiseClone extends JFrame {
     }
 
     private void generateExpenseReport(String groupName) {
-        try (Connection conn = DatabaseManager.getConnection()) {
+        try (Connection conn = DatabaseManager.getReadConnection()) {
             StringBuilder report = new StringBuilder();
             report.append("Expense Report for ").append(groupName).append("\n\n");
 
@@ -806,10 +2289,767 @@ class SplitwiseClone extends JFrame {
             e.printStackTrace();
         }
 
+        // Pending migrations run here rather than on the EDT, so a long one never leaves a
+        // frozen window behind
+        String migrationError = null;
+        try {
+            DatabaseManager.initializeDatabase();
+        } catch (SQLException e) {
+            e.printStackTrace();
+            migrationError = e.getMessage();
+        }
+
+        String initError = migrationError;
         SwingUtilities.invokeLater(() -> {
+            if (initError != null) {
+                JOptionPane.showMessageDialog(null, "Failed to initialize database: " + initError);
+            }
             SplitwiseClone app = new SplitwiseClone();
             app.setLocationRelativeTo(null);
             app.setVisible(true);
+
+            Integer benchmarkRows = Integer.getInteger("splitwise.listBenchmark");
+            if (benchmarkRows != null) {
+                SwingUtilities.invokeLater(() -> app.runListBenchmark(benchmarkRows));
+            }
         });
     }
 }
+
+// Headless load driver. Generates synthetic tenants (a group plus its members) and replays
+// expense traffic against the database through ExpenseStore, then reports throughput,
+// latency percentiles and row growth. Options are key=value, for example:
+//   java -cp .:mysql-connector-j-9.1.0.jar LoadDriver tenants=200 threads=8 duration=60
+// Point -Dsplitwise.db.url (and user/password) at an embedded database for local runs.
+class LoadDriver {
+    private static final String[] TABLES = {"participants", "expense_groups", "group_members", "expenses", "expense_shares"};
+
+    private enum Operation {
+        ADD_EXPENSE, SETTLE_SHARE, ADD_MEMBER
+    }
+
+    // One synthetic group. Unpaid shares are kept as {expenseId, participantId} pairs.
+    private static class Tenant {
+        final int index;
+        final int groupId;
+        final List<Integer> memberIds;
+        final double paymentRate;
+        final Queue<int[]> unpaidShares = new ConcurrentLinkedQueue<>();
+
+        Tenant(int index, int groupId, List<Integer> memberIds, double paymentRate) {
+            this.index = index;
+            this.groupId = groupId;
+            this.memberIds = new CopyOnWriteArrayList<>(memberIds);
+            this.paymentRate = paymentRate;
+        }
+    }
+
+    // Samples ranks 1..n with probability proportional to 1 / rank^exponent
+    private static class ZipfSampler {
+        private final double[] cdf;
+
+        ZipfSampler(int n, double exponent) {
+            cdf = new double[n];
+            double sum = 0;
+            for (int rank = 1; rank <= n; rank++) {
+                sum += 1.0 / Math.pow(rank, exponent);
+                cdf[rank - 1] = sum;
+            }
+            for (int i = 0; i < n; i++) {
+                cdf[i] /= sum;
+            }
+        }
+
+        int sample(Random random) {
+            int index = Arrays.binarySearch(cdf, random.nextDouble());
+            return (index >= 0 ? index : -index - 1) + 1;
+        }
+    }
+
+    // Tenant updates from one operation, applied to the shared Tenant only after the
+    // transaction commits, so a rollback never leaves ids or shares that were not written
+    private static class TenantChanges {
+        final List<int[]> newUnpaidShares = new ArrayList<>();
+        // Taken off the queue by a settle; goes back if the transaction rolls back
+        int[] takenShare;
+        // A share the member chose not to pay yet; goes back either way
+        int[] deferredShare;
+        Integer newMemberId;
+        // False when the operation wrote nothing, so it is not timed as a success
+        boolean wroteRows;
+
+        void applyAfterCommit(Tenant tenant) {
+            tenant.unpaidShares.addAll(newUnpaidShares);
+            if (deferredShare != null) {
+                tenant.unpaidShares.add(deferredShare);
+            }
+            if (newMemberId != null) {
+                tenant.memberIds.add(newMemberId);
+            }
+        }
+
+        void restoreAfterRollback(Tenant tenant) {
+            if (takenShare != null) {
+                tenant.unpaidShares.add(takenShare);
+            }
+            if (deferredShare != null) {
+                tenant.unpaidShares.add(deferredShare);
+            }
+        }
+    }
+
+    // Growable list of latencies in nanoseconds, owned by a single worker
+    private static class LatencySamples {
+        private long[] values = new long[1024];
+        private int size;
+
+        void add(long nanos) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = nanos;
+        }
+
+        void addAll(LatencySamples other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.values[i]);
+            }
+        }
+
+        double percentileMillis(double percentile) {
+            long[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            int index = Math.max(0, (int) Math.ceil(percentile * size) - 1);
+            return sorted[index] / 1_000_000.0;
+        }
+    }
+
+    private final int tenantCount;
+    private final int threads;
+    private final int durationSeconds;
+    private final int maxGroupSize;
+    private final long seed;
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+
+    private final List<Tenant> tenants = new ArrayList<>();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong staleSettles = new AtomicLong();
+    private final AtomicInteger joinedParticipants = new AtomicInteger();
+
+    LoadDriver(Map<String, String> options) {
+        tenantCount = positiveOption(options, "tenants", "100", 1);
+        threads = positiveOption(options, "threads", "4", 1);
+        durationSeconds = positiveOption(options, "duration", "30", 1);
+        maxGroupSize = positiveOption(options, "maxGroupSize", "50", 2);
+        seed = Long.parseLong(options.getOrDefault("seed", "42"));
+    }
+
+    private static int positiveOption(Map<String, String> options, String name, String defaultValue, int min) {
+        String value = options.getOrDefault(name, defaultValue);
+        int parsed;
+        try {
+            parsed = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be a number, got " + value);
+        }
+        if (parsed < min) {
+            throw new IllegalArgumentException(name + " must be at least " + min + ", got " + parsed);
+        }
+        return parsed;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq <= 0) {
+                System.err.println("Ignoring option without '=': " + arg);
+                continue;
+            }
+            options.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+
+        LoadDriver driver;
+        try {
+            driver = new LoadDriver(options);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: LoadDriver [tenants=N>=1] [threads=N>=1] [duration=S>=1] [maxGroupSize=N>=2] [seed=N]");
+            System.exit(2);
+            return;
+        }
+
+        DatabaseManager.initializeDatabase();
+        driver.run();
+    }
+
+    void run() throws Exception {
+        Map<String, Long> rowsBefore = countRows();
+
+        long setupStart = System.nanoTime();
+        createTenants();
+        double setupSeconds = (System.nanoTime() - setupStart) / 1_000_000_000.0;
+        int participants = tenants.stream().mapToInt(t -> t.memberIds.size()).sum();
+        System.out.printf("Setup: %d groups, %d participants in %.1f s%n", tenants.size(), participants, setupSeconds);
+
+        Map<Operation, LatencySamples> latencies = replay();
+
+        Map<String, Long> rowsAfter = countRows();
+        printReport(latencies, rowsBefore, rowsAfter);
+    }
+
+    // Group sizes follow a Zipf distribution: most groups are couples, a few are large
+    private void createTenants() throws Exception {
+        ZipfSampler groupSizes = new ZipfSampler(maxGroupSize - 1, 1.2);
+        Random random = new Random(seed);
+        int[] sizes = new int[tenantCount];
+        double[] paymentRates = new double[tenantCount];
+        for (int i = 0; i < tenantCount; i++) {
+            sizes[i] = 1 + groupSizes.sample(random);
+            // Payment patterns: prompt payers, slow payers, and groups that rarely settle
+            double kind = random.nextDouble();
+            paymentRates[i] = kind < 0.5 ? 0.9 : kind < 0.85 ? 0.5 : 0.05;
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<Tenant>> futures = new ArrayList<>();
+        for (int i = 0; i < tenantCount; i++) {
+            int index = i;
+            futures.add(pool.submit(() -> createTenant(index, sizes[index], paymentRates[index])));
+        }
+        for (Future<Tenant> future : futures) {
+            tenants.add(future.get());
+        }
+        pool.shutdown();
+    }
+
+    private Tenant createTenant(int index, int size, double paymentRate) throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                int groupId = ExpenseStore.insertGroup(conn, "lt-" + runId + "-g" + index);
+                List<Integer> memberIds = new ArrayList<>();
+                for (int j = 0; j < size; j++) {
+                    int participantId = ExpenseStore.insertParticipant(conn, "lt-" + runId + "-g" + index + "-p" + j);
+                    ExpenseStore.insertGroupMember(conn, groupId, participantId);
+                    memberIds.add(participantId);
+                }
+                conn.commit();
+                return new Tenant(index, groupId, memberIds, paymentRate);
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    private Map<Operation, LatencySamples> replay() throws Exception {
+        // Tenant activity is Zipf-distributed too, so a few groups produce most expenses
+        ZipfSampler tenantActivity = new ZipfSampler(tenants.size(), 1.0);
+        long deadline = System.nanoTime() + durationSeconds * 1_000_000_000L;
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<Map<Operation, LatencySamples>>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Random random = new Random(seed + i + 1);
+            futures.add(pool.submit(() -> runWorker(random, tenantActivity, deadline)));
+        }
+
+        Map<Operation, LatencySamples> merged = new EnumMap<>(Operation.class);
+        for (Future<Map<Operation, LatencySamples>> future : futures) {
+            for (Map.Entry<Operation, LatencySamples> entry : future.get().entrySet()) {
+                merged.computeIfAbsent(entry.getKey(), k -> new LatencySamples()).addAll(entry.getValue());
+            }
+        }
+        pool.shutdown();
+        return merged;
+    }
+
+    private Map<Operation, LatencySamples> runWorker(Random random, ZipfSampler tenantActivity, long deadline)
+            throws SQLException {
+        Map<Operation, LatencySamples> latencies = new EnumMap<>(Operation.class);
+        try (Connection conn = DatabaseManager.getConnection()) {
+            conn.setAutoCommit(false);
+            while (System.nanoTime() < deadline) {
+                Tenant tenant = tenants.get(tenantActivity.sample(random) - 1);
+                double roll = random.nextDouble();
+                Operation operation = roll < 0.6 || tenant.unpaidShares.isEmpty() ? Operation.ADD_EXPENSE
+                        : roll < 0.95 ? Operation.SETTLE_SHARE : Operation.ADD_MEMBER;
+
+                TenantChanges changes = new TenantChanges();
+                long start = System.nanoTime();
+                try {
+                    switch (operation) {
+                        case ADD_EXPENSE -> addExpense(conn, tenant, random, changes);
+                        case SETTLE_SHARE -> settleShare(conn, tenant, random, changes);
+                        case ADD_MEMBER -> addMember(conn, tenant, changes);
+                    }
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    changes.restoreAfterRollback(tenant);
+                    if (errors.getAndIncrement() == 0) {
+                        e.printStackTrace();
+                    }
+                    continue;
+                }
+
+                changes.applyAfterCommit(tenant);
+                if (changes.wroteRows) {
+                    latencies.computeIfAbsent(operation, k -> new LatencySamples()).add(System.nanoTime() - start);
+                }
+            }
+        }
+        return latencies;
+    }
+
+    // One member pays; the amount is split evenly and everyone else owes a share
+    private void addExpense(Connection conn, Tenant tenant, Random random, TenantChanges changes)
+            throws SQLException {
+        List<Integer> members = new ArrayList<>(tenant.memberIds);
+        double amount = Math.round(Math.exp(Math.log(40) + 0.8 * random.nextGaussian()) * 100) / 100.0;
+        int expenseId = ExpenseStore.insertExpense(conn, "lt-" + runId + "-g" + tenant.index + " expense", amount);
+
+        int payer = members.get(random.nextInt(members.size()));
+        double share = Math.round(amount / members.size() * 100) / 100.0;
+        for (int memberId : members) {
+            if (memberId != payer) {
+                ExpenseStore.insertExpenseShare(conn, expenseId, memberId, share);
+                changes.newUnpaidShares.add(new int[]{expenseId, memberId});
+            }
+        }
+        changes.wroteRows = true;
+    }
+
+    private void settleShare(Connection conn, Tenant tenant, Random random, TenantChanges changes)
+            throws SQLException {
+        int[] share = tenant.unpaidShares.poll();
+        if (share == null) {
+            return;
+        }
+        if (random.nextDouble() >= tenant.paymentRate) {
+            changes.deferredShare = share;
+            return;
+        }
+
+        changes.takenShare = share;
+        if (ExpenseStore.markSharePaid(conn, share[0], share[1]) == 1) {
+            changes.wroteRows = true;
+        } else {
+            // Already paid or gone; drop it instead of counting a settle that changed nothing
+            staleSettles.incrementAndGet();
+        }
+    }
+
+    private void addMember(Connection conn, Tenant tenant, TenantChanges changes) throws SQLException {
+        String name = "lt-" + runId + "-g" + tenant.index + "-j" + joinedParticipants.incrementAndGet();
+        int participantId = ExpenseStore.insertParticipant(conn, name);
+        ExpenseStore.insertGroupMember(conn, tenant.groupId, participantId);
+        changes.newMemberId = participantId;
+        changes.wroteRows = true;
+    }
+
+    private Map<String, Long> countRows() throws SQLException {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        try (Connection conn = DatabaseManager.getConnection()) {
+            for (String table : TABLES) {
+                counts.put(table, ExpenseStore.countRows(conn, table));
+            }
+        }
+        return counts;
+    }
+
+    private void printReport(Map<Operation, LatencySamples> latencies, Map<String, Long> rowsBefore,
+                             Map<String, Long> rowsAfter) {
+        System.out.printf("%nLoad test: %d tenants, %d threads, %d s%n", tenants.size(), threads, durationSeconds);
+        System.out.printf("%-14s %10s %10s %9s %9s %9s %9s%n", "operation", "count", "ops/s", "p50 ms", "p95 ms", "p99 ms", "max ms");
+
+        long total = 0;
+        for (Map.Entry<Operation, LatencySamples> entry : latencies.entrySet()) {
+            LatencySamples samples = entry.getValue();
+            total += samples.size;
+            System.out.printf("%-14s %10d %10.1f %9.2f %9.2f %9.2f %9.2f%n",
+                    entry.getKey().name().toLowerCase(), samples.size, samples.size / (double) durationSeconds,
+                    samples.percentileMillis(0.50), samples.percentileMillis(0.95),
+                    samples.percentileMillis(0.99), samples.percentileMillis(1.0));
+        }
+        System.out.printf("Total: %d operations, %.1f ops/s, %d errors, %d settles that updated no row%n",
+                total, total / (double) durationSeconds, errors.get(), staleSettles.get());
+
+        System.out.println("\nRow growth:");
+        for (String table : TABLES) {
+            long before = rowsBefore.get(table);
+            long after = rowsAfter.get(table);
+            System.out.printf("  %-15s %+10d (%d -> %d)%n", table, after - before, before, after);
+        }
+    }
+}
+
+// Everything one participant currently owes, built by ReminderDigestEngine
+// Shares arrive in expense_id order, so a digest covers the key range
+// (participantId, expense_id <= maxExpenseId) and can be marked paid by that range alone
+class ReminderDigest {
+    // Only the first lines are written out; mark-paid still covers every share
+    static final int MAX_LISTED_SHARES = 50;
+
+    private final int participantId;
+    private final String participantName;
+    private final List<String> lines = new ArrayList<>();
+    private int maxExpenseId;
+    private int shareCount;
+    private double totalAmount;
+
+    ReminderDigest(int participantId, String participantName) {
+        this.participantId = participantId;
+        this.participantName = participantName;
+    }
+
+    void addShare(int expenseId, String expenseName, double shareAmount) {
+        maxExpenseId = Math.max(maxExpenseId, expenseId);
+        shareCount++;
+        totalAmount += shareAmount;
+        if (lines.size() < MAX_LISTED_SHARES) {
+            lines.add(String.format("  %s: $%.2f", expenseName, shareAmount));
+        }
+    }
+
+    public int getParticipantId() { return participantId; }
+    public String getParticipantName() { return participantName; }
+    public int getShareCount() { return shareCount; }
+    public double getTotalAmount() { return totalAmount; }
+    public int getMaxExpenseId() { return maxExpenseId; }
+
+    public String getBody() {
+        StringBuilder body = new StringBuilder();
+        body.append(String.format("Hi %s, you owe $%.2f across %d expense%s:%n",
+                participantName, totalAmount, shareCount, shareCount == 1 ? "" : "s"));
+        for (String line : lines) {
+            body.append(line).append(System.lineSeparator());
+        }
+        if (shareCount > lines.size()) {
+            body.append(String.format("  ...and %d more%n", shareCount - lines.size()));
+        }
+        body.append(String.format("Ref: participant=%d through=%d shares=%d%n", participantId, maxExpenseId, shareCount));
+        return body.toString();
+    }
+}
+
+// Destination for reminder digests; close() flushes anything buffered
+interface DigestSink extends Closeable {
+    void write(ReminderDigest digest) throws IOException, SQLException;
+}
+
+// Appends digests to a local text file
+class FileDigestSink implements DigestSink {
+    private final BufferedWriter writer;
+
+    FileDigestSink(Path file) throws IOException {
+        writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    @Override
+    public void write(ReminderDigest digest) throws IOException {
+        writer.write(digest.getBody());
+        writer.newLine();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
+
+// Inserts digests into the reminder_outbox table for a separate sender to deliver.
+// Rows are sent in JDBC batches.
+class OutboxDigestSink implements DigestSink {
+    private static final int BATCH_SIZE = 500;
+
+    private final PreparedStatement stmt;
+    private int pending;
+
+    OutboxDigestSink(Connection conn) throws SQLException {
+        stmt = conn.prepareStatement(
+                "INSERT INTO reminder_outbox (participant_id, max_expense_id, share_count, total_amount, body) VALUES (?, ?, ?, ?, ?)");
+    }
+
+    @Override
+    public void write(ReminderDigest digest) throws SQLException {
+        stmt.setInt(1, digest.getParticipantId());
+        stmt.setInt(2, digest.getMaxExpenseId());
+        stmt.setInt(3, digest.getShareCount());
+        stmt.setDouble(4, digest.getTotalAmount());
+        stmt.setString(5, digest.getBody());
+        stmt.addBatch();
+        if (++pending == BATCH_SIZE) {
+            stmt.executeBatch();
+            pending = 0;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try (stmt) {
+            if (pending > 0) {
+                stmt.executeBatch();
+            }
+        } catch (SQLException e) {
+            throw new IOException("Failed to flush reminder outbox", e);
+        }
+    }
+}
+
+// Builds one reminder digest per participant with unpaid shares. Shares are read in
+// (participant_id, expense_id) order with keyset pagination over idx_expense_shares_unpaid,
+// so each batch is an index range scan and memory holds at most one digest at a time.
+// A run can stop after a share budget and resume after the last participant it finished:
+//   java -cp .:mysql-connector-j-9.1.0.jar ReminderDigestEngine sink=file file=reminders.txt after=0 maxShares=100000
+// A delivered digest is marked paid by its outbox row or by the Ref line of a file digest:
+//   java -cp .:mysql-connector-j-9.1.0.jar ReminderDigestEngine mark-paid outbox=42
+//   java -cp .:mysql-connector-j-9.1.0.jar ReminderDigestEngine mark-paid participant=7 through=1234 shares=12
+class ReminderDigestEngine {
+    private static final String UNPAID_SHARES_SQL = """
+        SELECT es.participant_id, es.expense_id, es.share_amount, p.name AS participant_name, e.name AS expense_name
+        FROM expense_shares es
+        JOIN participants p ON p.id = es.participant_id
+        JOIN expenses e ON e.id = es.expense_id
+        WHERE es.is_paid = FALSE
+          AND (es.participant_id > ? OR (es.participant_id = ? AND es.expense_id > ?))
+        ORDER BY es.participant_id, es.expense_id
+        LIMIT ?
+    """;
+
+    private final int batchSize;
+    private int digestCount;
+
+    ReminderDigestEngine(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batch must be at least 1, got " + batchSize);
+        }
+        this.batchSize = batchSize;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq > 0) {
+                options.put(arg.substring(0, eq), arg.substring(eq + 1));
+            }
+        }
+        if (args.length > 0 && "mark-paid".equals(args[0])) {
+            markPaid(options);
+            return;
+        }
+
+        int after;
+        long maxShares;
+        int batchSize;
+        try {
+            after = (int) option(options, "after", "0", 0, Integer.MAX_VALUE);
+            maxShares = option(options, "maxShares", String.valueOf(Long.MAX_VALUE), 1, Long.MAX_VALUE);
+            batchSize = (int) option(options, "batch", "5000", 1, Integer.MAX_VALUE);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: ReminderDigestEngine [sink=file|outbox] [file=PATH] [after=N>=0] [maxShares=N>=1] [batch=N>=1]");
+            System.exit(2);
+            return;
+        }
+
+        DatabaseManager.initializeDatabase();
+        try (Connection conn = DatabaseManager.getConnection()) {
+            ReminderDigestEngine engine = new ReminderDigestEngine(batchSize);
+            long start = System.nanoTime();
+            int last;
+            try (DigestSink sink = "outbox".equals(options.get("sink"))
+                    ? new OutboxDigestSink(conn)
+                    : new FileDigestSink(Paths.get(options.getOrDefault("file", "reminders.txt")))) {
+                last = engine.run(conn, sink, after, maxShares);
+            }
+            System.out.printf("Wrote %d digests in %.1f s%n", engine.getDigestCount(), (System.nanoTime() - start) / 1_000_000_000.0);
+            System.out.println(last == 0 ? "All unpaid shares covered" : "Next run: after=" + last);
+        }
+    }
+
+    private static void markPaid(Map<String, String> options) throws SQLException {
+        long outboxId = 0;
+        int participantId = 0;
+        int through = 0;
+        int shares = 0;
+        try {
+            if (options.containsKey("outbox")) {
+                outboxId = option(options, "outbox", null, 1, Long.MAX_VALUE);
+            } else if (options.containsKey("participant") && options.containsKey("through") && options.containsKey("shares")) {
+                participantId = (int) option(options, "participant", null, 1, Integer.MAX_VALUE);
+                through = (int) option(options, "through", null, 1, Integer.MAX_VALUE);
+                shares = (int) option(options, "shares", null, 1, Integer.MAX_VALUE);
+            } else {
+                throw new IllegalArgumentException("Give outbox=, or participant=, through= and shares=");
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: ReminderDigestEngine mark-paid outbox=<id> | participant=<id> through=<expense id> shares=<count>");
+            System.exit(2);
+            return;
+        }
+
+        DatabaseManager.initializeDatabase();
+        try (Connection conn = DatabaseManager.getConnection()) {
+            int updated = outboxId > 0
+                    ? markOutboxPaid(conn, outboxId)
+                    : markDigestPaid(conn, participantId, through, shares);
+            System.out.println("Marked " + updated + " shares paid");
+        }
+    }
+
+    private static long option(Map<String, String> options, String name, String defaultValue, long min, long max) {
+        String value = options.getOrDefault(name, defaultValue);
+        long parsed;
+        try {
+            parsed = Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be a number, got " + value);
+        }
+        if (parsed < min) {
+            throw new IllegalArgumentException(name + " must be at least " + min + ", got " + parsed);
+        }
+        if (parsed > max) {
+            throw new IllegalArgumentException(name + " must be at most " + max + ", got " + parsed);
+        }
+        return parsed;
+    }
+
+    // Writes digests for participants after afterParticipantId. Stops at the first participant
+    // boundary once maxShares shares have been read. Returns the last participant written,
+    // or 0 when the scan reached the end.
+    public int run(Connection conn, DigestSink sink, int afterParticipantId, long maxShares)
+            throws SQLException, IOException {
+        digestCount = 0;
+        int cursorParticipant = afterParticipantId;
+        int cursorExpense = Integer.MAX_VALUE;
+        long sharesRead = 0;
+        ReminderDigest current = null;
+
+        try (PreparedStatement stmt = conn.prepareStatement(UNPAID_SHARES_SQL)) {
+            while (true) {
+                stmt.setInt(1, cursorParticipant);
+                stmt.setInt(2, cursorParticipant);
+                stmt.setInt(3, cursorExpense);
+                stmt.setInt(4, batchSize);
+
+                int rows = 0;
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        rows++;
+                        int participantId = rs.getInt("participant_id");
+                        int expenseId = rs.getInt("expense_id");
+
+                        if (current == null || current.getParticipantId() != participantId) {
+                            if (current != null) {
+                                emit(sink, current);
+                                if (sharesRead >= maxShares) {
+                                    return current.getParticipantId();
+                                }
+                            }
+                            current = new ReminderDigest(participantId, rs.getString("participant_name"));
+                        }
+                        current.addShare(expenseId, rs.getString("expense_name"), rs.getDouble("share_amount"));
+                        sharesRead++;
+
+                        cursorParticipant = participantId;
+                        cursorExpense = expenseId;
+                    }
+                }
+
+                if (rows < batchSize) {
+                    break;
+                }
+            }
+        }
+
+        if (current != null) {
+            emit(sink, current);
+        }
+        return 0;
+    }
+
+    // Marks the participant's unpaid shares up to maxExpenseId as paid with one range update.
+    // A share added after the digest went out for an expense in that range would be marked
+    // too, so the update is rolled back unless it touched exactly the digest's share count.
+    public static int markDigestPaid(Connection conn, int participantId, int maxExpenseId, int shareCount)
+            throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            int updated = ExpenseStore.markSharesPaidThrough(conn, participantId, maxExpenseId);
+            checkShareCount(updated, shareCount, "participant " + participantId + " through expense " + maxExpenseId);
+            conn.commit();
+            DatabaseManager.recordWrite(conn);
+            return updated;
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    // Marks the digest stored in a reminder_outbox row as paid and stamps the row, in one
+    // transaction, with the same share count guard as markDigestPaid. A row that is
+    // already paid is left alone and 0 is returned.
+    public static int markOutboxPaid(Connection conn, long outboxId) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            int participantId;
+            int maxExpenseId;
+            int shareCount;
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "SELECT participant_id, max_expense_id, share_count FROM reminder_outbox WHERE id = ? AND paid_at IS NULL FOR UPDATE")) {
+                stmt.setLong(1, outboxId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (!rs.next()) {
+                        conn.rollback();
+                        return 0;
+                    }
+                    participantId = rs.getInt("participant_id");
+                    maxExpenseId = rs.getInt("max_expense_id");
+                    shareCount = rs.getInt("share_count");
+                }
+            }
+
+            int updated = ExpenseStore.markSharesPaidThrough(conn, participantId, maxExpenseId);
+            checkShareCount(updated, shareCount, "outbox row " + outboxId);
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "UPDATE reminder_outbox SET paid_at = CURRENT_TIMESTAMP WHERE id = ?")) {
+                stmt.setLong(1, outboxId);
+                stmt.executeUpdate();
+            }
+            conn.commit();
+            DatabaseManager.recordWrite(conn);
+            return updated;
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    // Thrown inside the mark-paid transaction, so the caller's catch rolls it back
+    private static void checkShareCount(int updated, int shareCount, String digest) throws SQLException {
+        if (updated != shareCount) {
+            throw new SQLException("Digest for " + digest + " covered " + shareCount + " shares but "
+                    + updated + " unpaid shares are in its range; nothing was marked paid");
+        }
+    }
+
+    public int getDigestCount() {
+        return digestCount;
+    }
+
+    private void emit(DigestSink sink, ReminderDigest digest) throws SQLException, IOException {
+        sink.write(digest);
+        digestCount++;
+    }
+}